@@ -0,0 +1,83 @@
+package ru.ggershevich;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CachingSolver} против того же решателя без кэша ({@code cache=0}). REPEATED - примеры набора повторяются,
+ * как в пакетном файле с повторами: с кэшем должно быть быстрее. UNIQUE - каждый пример с новой перенумерацией
+ * цветов, в кэше его нет: накладные расходы кэша на промахе должны быть малы по сравнению с решением.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CachingSolverBenchmark {
+
+    @Param({"EASY", "HARD"})
+    private Corpus corpus;
+
+    @Param({"0", "100"})
+    private int cache;
+
+    @Param({"REPEATED", "UNIQUE"})
+    private Workload workload;
+
+    public enum Workload {
+        REPEATED, UNIQUE
+    }
+
+    private Solver solver;
+    private int[][] examples;
+    private int next;
+    private final Random random = new Random(1);
+
+    @Setup
+    public void setUp() {
+        solver = cache > 0 ? new CachingSolver(new ColoringSolver(), cache) : new ColoringSolver();
+        final String[] strings = corpus.examples();
+        examples = new int[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            examples[i] = SudokuSolver.prepare(strings[i]);
+        }
+    }
+
+    @Benchmark
+    public int[] solve() {
+        final int[] example = examples[next];
+        next = (next + 1) % examples.length;
+        return solver.solve(workload == Workload.UNIQUE ? relabel(example) : example);
+    }
+
+    /**
+     * Случайная перестановка цветов: 9! вариантов, повтор в кэше на 100 записей практически невозможен
+     */
+    private int[] relabel(int[] nodes) {
+        final int[] colors = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        for (int i = 9; i > 1; i--) {
+            final int j = 1 + random.nextInt(i);
+            final int swap = colors[i];
+            colors[i] = colors[j];
+            colors[j] = swap;
+        }
+        final int[] result = new int[nodes.length];
+        for (int node = 0; node < nodes.length; node++) {
+            result[node] = colors[nodes[node]];
+        }
+        return result;
+    }
+}
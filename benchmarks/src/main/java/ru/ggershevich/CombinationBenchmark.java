@@ -0,0 +1,59 @@
+package ru.ggershevich;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link SearchState#nextCombination(int, boolean)} отдельно от остального перебора: все комбинации первого
+ * ветвления первого примера набора. Когда комбинации заканчиваются, состояние возвращается к началу ветвления,
+ * поэтому каждый вызов перебирает одно и то же.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombinationBenchmark {
+
+    @Param({"HARD", "EXTREME"})
+    private Corpus corpus;
+
+    private SearchState state;
+
+    @Setup
+    public void setUp() {
+        // Только одиночки, иначе остальные техники решают пример без ветвления
+        state = new SearchState(Board.standard(), SudokuSolver.prepare(corpus.examples()[0]),
+                Propagation.of(Propagation.Technique.NAKED_SINGLES), SolverConfig.Branching.COLOR);
+        if (state.branch(0) != SearchState.Step.BRANCH) {
+            throw new IllegalStateException("Example must need branching");
+        }
+    }
+
+    /**
+     * Перебор всех комбинаций ветвления
+     * @return количество комбинаций
+     */
+    @Benchmark
+    public int nextCombination() {
+        int count = 0;
+        boolean first = true;
+        while (state.nextCombination(0, first)) {
+            first = false;
+            count++;
+        }
+        return count;
+    }
+}
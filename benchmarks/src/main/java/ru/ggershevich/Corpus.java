@@ -0,0 +1,40 @@
+package ru.ggershevich;
+
+/**
+ * Фиксированные наборы примеров, сгруппированные по сложности для алгоритма раскрашивания.
+ * Наборы нельзя менять без пересчета базовых результатов - иначе сравнение прогонов теряет смысл.
+ */
+public enum Corpus {
+    /**
+     * Решаются расстановкой цветов для вершин с единственным доступным цветом, без перебора. Как testSolve4
+     */
+    EASY(
+            "013800405024605000087000930490306000001000500000701093069000740000207680102008350",
+            "003020600900305001001806400008102900700000008006708200002609500800203009005010300",
+            "200080300060070084030500209000105408000000000402706000301007040720040060004010003"
+    ),
+    /**
+     * Требуют перебора комбинаций на нескольких уровнях. Как testSolve5
+     */
+    HARD(
+            "002000041000082070000040009200079300010000080006810004100090000060430000850000400",
+            "081790304000040016006103050000008640008904100049200000090605200870020000205017490",
+            "300000000050703008000028070700000043000000000003904105400300800100040000968000200"
+    ),
+    /**
+     * Десятки миллионов комбинаций. Как testSolve3
+     */
+    EXTREME(
+            "100000089000009002000000450007600000030040000900002005004070000500008010060300000"
+    );
+
+    private final String[] examples;
+
+    Corpus(String... examples) {
+        this.examples = examples;
+    }
+
+    public String[] examples() {
+        return examples.clone();
+    }
+}
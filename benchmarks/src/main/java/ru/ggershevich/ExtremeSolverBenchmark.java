@@ -0,0 +1,51 @@
+package ru.ggershevich;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Решение самых сложных примеров. Один пример может решаться минутами, поэтому замеряется время
+ * одиночного вызова без многократных повторов.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ExtremeSolverBenchmark {
+
+    @Param({"EXTREME"})
+    private Corpus corpus;
+
+    @Param({"COLORING", "TEMPLATE", "DLX"})
+    private Engine engine;
+
+    private Solver solver;
+    private String[] examples;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        examples = corpus.examples();
+        solver = engine.solver();
+    }
+
+    @Benchmark
+    public String solve() {
+        final String example = examples[next];
+        next = (next + 1) % examples.length;
+        return solver.solve(example);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.ggershevich;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Один экземпляр {@link ColoringSolver} на все потоки. Каждый поток решает свои примеры; при независимых
+ * решениях пропускная способность должна расти пропорционально количеству потоков (параметр JMH -t).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class SharedSolverBenchmark {
+
+    @Param({"EASY", "HARD"})
+    private Corpus corpus;
+
+    private ColoringSolver solver;
+    private int[][] examples;
+
+    @Setup
+    public void setUp() {
+        solver = new ColoringSolver();
+        final String[] strings = corpus.examples();
+        examples = new int[strings.length][];
+        for (int i = 0; i < strings.length; i++) {
+            examples[i] = SudokuSolver.prepare(strings[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public int[] solve(Cursor cursor) {
+        final int[] example = examples[cursor.next];
+        cursor.next = (cursor.next + 1) % examples.length;
+        return solver.solve(example);
+    }
+}
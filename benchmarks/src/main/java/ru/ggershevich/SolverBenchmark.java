@@ -0,0 +1,51 @@
+package ru.ggershevich;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Решение примеров целиком через {@link Solver#solve(String)} каждым из алгоритмов {@link Engine}. Каждый вызов решает следующий пример набора,
+ * поэтому результат - среднее по набору.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SolverBenchmark {
+
+    @Param({"EASY", "HARD"})
+    private Corpus corpus;
+
+    @Param({"COLORING", "TEMPLATE", "DLX", "PORTFOLIO"})
+    private Engine engine;
+
+    private Solver solver;
+    private String[] examples;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        examples = corpus.examples();
+        solver = engine.solver();
+    }
+
+    @Benchmark
+    public String solve() {
+        final String example = examples[next];
+        next = (next + 1) % examples.length;
+        return solver.solve(example);
+    }
+}
@@ -0,0 +1,371 @@
+package ru.ggershevich;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static ru.ggershevich.SudokuSolver.NUM_OF_NODES;
+
+/**
+ * Пакетное решение: по одному примеру из 81 символа в строке, из файла или стандартного ввода.
+ * <p>
+ * Примеры решаются пулом из {@code threads} потоков выбранным {@link Solver}. Ответы печатаются в порядке примеров во входе, либо,
+ * если {@code ordered == false}, в порядке решения - тогда перед ответом печатается порядковый номер примера
+ * (пустые строки не нумеруются).
+ * Если решатель бросил исключение, вместо ответа печатается {@link #FAILED}, пакет решается дальше,
+ * количество таких примеров - {@link #failures()}.
+ * Одновременно в работе не больше {@code threads * IN_FLIGHT_PER_THREAD} примеров, поэтому размер входа
+ * на потребление памяти не влияет.
+ */
+class BatchSolver {
+    private static final int IN_FLIGHT_PER_THREAD = 64;
+    static final String NOT_FOUND = "Solution not found";
+    static final String INVALID = "Invalid example";
+    static final String FAILED = "Solver failed";
+
+    private final int threads;
+    private final boolean ordered;
+    private final Solver solver;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+
+    BatchSolver(int threads, boolean ordered) {
+        this(threads, ordered, new ColoringSolver());
+    }
+
+    BatchSolver(int threads, boolean ordered, Solver solver) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive");
+        }
+        if (solver == null) {
+            throw new IllegalArgumentException("Solver must not be null");
+        }
+        this.threads = threads;
+        this.ordered = ordered;
+        this.solver = solver;
+    }
+
+    /**
+     * Решает все примеры из файла. Файл читается через отображение в память. Файл в формате
+     * {@link PackedFormat} определяется по заголовку, номер строки в ответе - номер записи, начиная с 1
+     */
+    void solve(Path file, PrintStream out) throws IOException {
+        try (PuzzleSource source = PackedFormat.isPacked(file) ? new PackedSource(file) : new MappedSource(file)) {
+            solve(source, out);
+        }
+    }
+
+    /**
+     * Решает все примеры из потока, например из стандартного ввода
+     */
+    void solve(InputStream in, PrintStream out) throws IOException {
+        try (PuzzleSource source = new StreamSource(in)) {
+            solve(source, out);
+        }
+    }
+
+    LatencyHistogram latency() {
+        return latency;
+    }
+
+    Solver solver() {
+        return solver;
+    }
+
+    /**
+     * @return сколько примеров не решено из-за исключения решателя
+     */
+    long failures() {
+        return failures.sum();
+    }
+
+    private void solve(PuzzleSource source, PrintStream out) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final int maxInFlight = threads * IN_FLIGHT_PER_THREAD;
+        try {
+            if (ordered) {
+                Deque<Future<Result>> window = new ArrayDeque<>();
+                int[] nodes;
+                for (long line = 1; (nodes = source.next()) != null; line++) {
+                    window.add(nodes == PuzzleSource.INVALID
+                            ? CompletableFuture.completedFuture(new Result(line, null, INVALID))
+                            : executor.submit(task(line, nodes)));
+                    if (window.size() >= maxInFlight) {
+                        write(out, await(window.poll()));
+                    }
+                }
+                while (!window.isEmpty()) {
+                    write(out, await(window.poll()));
+                }
+            } else {
+                CompletionService<Result> completion = new ExecutorCompletionService<>(executor);
+                int inFlight = 0;
+                int[] nodes;
+                for (long line = 1; (nodes = source.next()) != null; line++) {
+                    if (nodes == PuzzleSource.INVALID) {
+                        write(out, new Result(line, null, INVALID));
+                        continue;
+                    }
+                    completion.submit(task(line, nodes));
+                    if (++inFlight >= maxInFlight) {
+                        write(out, await(completion.take()));
+                        inFlight--;
+                    }
+                }
+                for (; inFlight > 0; inFlight--) {
+                    write(out, await(completion.take()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch solving interrupted", e);
+        } finally {
+            executor.shutdownNow();
+            out.flush();
+        }
+    }
+
+    private Callable<Result> task(long line, int[] nodes) {
+        return () -> {
+            final long start = System.nanoTime();
+            final int[] solution;
+            try {
+                solution = solver.solve(nodes);
+            } catch (RuntimeException e) {
+                // Один пример не прерывает пакет
+                failures.increment();
+                return new Result(line, null, FAILED);
+            }
+            latency.record(System.nanoTime() - start);
+            return new Result(line, solution, NOT_FOUND);
+        };
+    }
+
+    private static Result await(Future<Result> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Solver failed", e.getCause());
+        }
+    }
+
+    private void write(PrintStream out, Result result) {
+        if (!ordered) {
+            out.print(result.line);
+            out.print(' ');
+        }
+        if (result.solution == null) {
+            out.println(result.error);
+        } else {
+            final char[] chars = new char[result.solution.length];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) ('0' + result.solution[i]);
+            }
+            out.println(chars);
+        }
+    }
+
+    private static final class Result {
+        final long line;
+        final int[] solution;
+        final String error;
+
+        Result(long line, int[] solution, String error) {
+            this.line = line;
+            this.solution = solution;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Источник примеров. Каждый пример сразу разбирается в массив окраски вершин, без промежуточных строк
+     */
+    interface PuzzleSource extends Closeable {
+        /**
+         * Признак строки, которая не является примером из 81 цифры
+         */
+        int[] INVALID = new int[0];
+
+        /**
+         * @return массив окраски вершин, {@link #INVALID} или null, если примеры закончились. Пустые строки пропускаются
+         */
+        int[] next() throws IOException;
+    }
+
+    /**
+     * Чтение файла через отображение в память. Файл отображается областями по {@link #REGION} байт,
+     * строка на границе области перечитывается из следующей области
+     */
+    static final class MappedSource implements PuzzleSource {
+        private static final long REGION = 64L << 20;
+
+        private final FileChannel channel;
+        private final long size;
+        private long regionStart;
+        private MappedByteBuffer buffer;
+
+        MappedSource(Path file) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            size = channel.size();
+            map(0);
+        }
+
+        private void map(long position) throws IOException {
+            regionStart = position;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(REGION, size - position));
+        }
+
+        @Override
+        public int[] next() throws IOException {
+            while (true) {
+                if (!buffer.hasRemaining()) {
+                    if (regionStart + buffer.limit() >= size) {
+                        return null;
+                    }
+                    map(regionStart + buffer.limit());
+                }
+                final int start = buffer.position();
+                final int limit = buffer.limit();
+                int end = start;
+                while (end < limit && buffer.get(end) != '\n') {
+                    end++;
+                }
+                if (end == limit && start > 0 && regionStart + limit < size) {
+                    // Строка разрезана границей области
+                    map(regionStart + start);
+                    continue;
+                }
+                buffer.position(end < limit ? end + 1 : end);
+
+                int length = end - start;
+                if (length > 0 && buffer.get(start + length - 1) == '\r') {
+                    length--;
+                }
+                if (length == 0) {
+                    continue;
+                }
+                if (length != NUM_OF_NODES) {
+                    return INVALID;
+                }
+                final int[] nodes = new int[NUM_OF_NODES];
+                for (int i = 0; i < NUM_OF_NODES; i++) {
+                    final int c = buffer.get(start + i);
+                    if (c < '0' || c > '9') {
+                        return INVALID;
+                    }
+                    nodes[i] = c - '0';
+                }
+                return nodes;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Чтение примеров из потока
+     */
+    static final class StreamSource implements PuzzleSource {
+        private final InputStream in;
+        private final byte[] line = new byte[NUM_OF_NODES];
+
+        StreamSource(InputStream in) {
+            this.in = new BufferedInputStream(in, 1 << 16);
+        }
+
+        @Override
+        public int[] next() throws IOException {
+            int length = 0;
+            boolean tooLong = false;
+            int c;
+            while ((c = in.read()) >= 0) {
+                if (c == '\n') {
+                    if (length == 0 && !tooLong) {
+                        continue;
+                    }
+                    break;
+                }
+                if (c == '\r') {
+                    continue;
+                }
+                if (length < line.length) {
+                    line[length++] = (byte) c;
+                } else {
+                    tooLong = true;
+                }
+            }
+            if (length == 0 && !tooLong) {
+                return null;
+            }
+            if (tooLong || length != NUM_OF_NODES) {
+                return INVALID;
+            }
+            final int[] nodes = new int[NUM_OF_NODES];
+            for (int i = 0; i < NUM_OF_NODES; i++) {
+                if (line[i] < '0' || line[i] > '9') {
+                    return INVALID;
+                }
+                nodes[i] = line[i] - '0';
+            }
+            return nodes;
+        }
+
+        @Override
+        public void close() {
+            // Стандартный ввод не закрываем
+        }
+    }
+
+    /**
+     * Чтение архива в формате {@link PackedFormat}: записи распаковываются прямо в массив окраски вершин
+     */
+    static final class PackedSource implements PuzzleSource {
+        private final PackedFormat.Reader reader;
+
+        PackedSource(Path file) throws IOException {
+            reader = new PackedFormat.Reader(file);
+            if (reader.board() != Board.standard()) {
+                reader.close();
+                throw new IOException("Batch mode supports 9 x 9 examples only, found " + reader.board());
+            }
+        }
+
+        @Override
+        public int[] next() throws IOException {
+            final int[] nodes = new int[NUM_OF_NODES];
+            switch (reader.read(nodes, null)) {
+                case PackedFormat.Reader.RECORD:
+                    return nodes;
+                case PackedFormat.Reader.CORRUPTED:
+                    return INVALID;
+                default:
+                    return null;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.ggershevich;
+
+/**
+ * Множества вершин в массивах long без объектов BitSet.
+ * <p>
+ * Множество занимает {@link #words(int)} подряд идущих long в общем массиве и задается смещением первого слова.
+ * Для поля 9 x 9 это два long (128 бит на 81 вершину), для 16 x 16 - четыре, для 25 x 25 - десять.
+ * Используется {@link Board} для построения списков смежности; перебор работает со списками, а не с множествами.
+ */
+final class Bitboard {
+    private Bitboard() {
+    }
+
+    /**
+     * @return количество long на множество из bits элементов
+     */
+    static int words(int bits) {
+        return (bits + 63) >>> 6;
+    }
+
+    static void set(long[] sets, int offset, int bit) {
+        sets[offset + (bit >>> 6)] |= 1L << bit;
+    }
+
+    static int cardinality(long[] sets, int offset, int words) {
+        int count = 0;
+        for (int i = 0; i < words; i++) {
+            count += Long.bitCount(sets[offset + i]);
+        }
+        return count;
+    }
+
+    /**
+     * @return наименьший элемент не меньше from или -1
+     */
+    static int nextSetBit(long[] sets, int offset, int words, int from) {
+        int index = from >>> 6;
+        if (index >= words) {
+            return -1;
+        }
+        long word = sets[offset + index] & -1L << from;
+        while (word == 0) {
+            if (++index == words) {
+                return -1;
+            }
+            word = sets[offset + index];
+        }
+        return (index << 6) + Long.numberOfTrailingZeros(word);
+    }
+}
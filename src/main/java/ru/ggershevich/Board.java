@@ -0,0 +1,311 @@
+package ru.ggershevich;
+
+
+/**
+ * Поле судоку N^2 x N^2 с квадратами N x N: для N = 3 - обычное поле 9 x 9, для N = 4 - 16 x 16, для N = 5 - 25 x 25.
+ * <p>
+ * Количество цветов равно длине строки N^2, поэтому маска цветов вершины, строки, колонки или квадрата
+ * помещается в int: цвет c (1..N^2) - бит c - 1. Таблицы смежности, строки, колонки и квадраты каждой вершины
+ * строятся один раз на размер поля, поля с одинаковым N - один и тот же объект.
+ * <p>
+ * Текстовый формат примера - по символу на вершину: 0 или '.' - неокрашенная вершина, 1-9 и дальше буквы A-P
+ * (10-25) - цвет.
+ */
+public final class Board {
+    static final int MIN_BOX_SIZE = 2;
+    static final int MAX_BOX_SIZE = 5;
+    private static final int RADIX = Character.MAX_RADIX;
+    /**
+     * Символы цветов 0..25 для {@link #toString(int[])}
+     */
+    private static final char[] SYMBOLS = "0123456789ABCDEFGHIJKLMNOP".toCharArray();
+
+    private static final Board[] BOARDS = new Board[MAX_BOX_SIZE + 1];
+
+    static {
+        for (int boxSize = MIN_BOX_SIZE; boxSize <= MAX_BOX_SIZE; boxSize++) {
+            BOARDS[boxSize] = new Board(boxSize);
+        }
+    }
+
+    /**
+     * Обычное поле 9 x 9
+     */
+    static final Board STANDARD = BOARDS[3];
+
+    private final int boxSize;
+    /**
+     * Длина строки, колонки и квадрата, она же количество цветов
+     */
+    final int size;
+    final int cells;
+    final int allColors;
+
+    /**
+     * Списки смежности в виде массивов индексов - для обхода соседей без поиска по битам
+     */
+    final int[][] neighbours;
+    final int[] rowOf;
+    final int[] columnOf;
+    final int[] boxOf;
+    /**
+     * Строки (0..size-1), колонки (size..2*size-1) и квадраты (2*size..3*size-1), каждый - массив индексов вершин
+     */
+    final int[][] units;
+    /**
+     * Пересечения квадрата со строкой или колонкой (по boxSize вершин), остаток квадрата и остаток строки или колонки.
+     * Используются техникой {@link Propagation.Technique#LOCKED_CANDIDATES}
+     */
+    final int[][] segments;
+    final int[][] segmentBoxRest;
+    final int[][] segmentLineRest;
+
+    private Board(int boxSize) {
+        this.boxSize = boxSize;
+        this.size = boxSize * boxSize;
+        this.cells = size * size;
+        this.allColors = (1 << size) - 1;
+
+        rowOf = new int[cells];
+        columnOf = new int[cells];
+        boxOf = new int[cells];
+        for (int node = 0; node < cells; node++) {
+            rowOf[node] = node / size;
+            columnOf[node] = node % size;
+            boxOf[node] = boxSize * (rowOf[node] / boxSize) + columnOf[node] / boxSize;
+        }
+
+        units = new int[3 * size][size];
+        final int[] unitSize = new int[3 * size];
+        for (int node = 0; node < cells; node++) {
+            final int row = rowOf[node];
+            final int column = size + columnOf[node];
+            final int box = 2 * size + boxOf[node];
+            units[row][unitSize[row]++] = node;
+            units[column][unitSize[column]++] = node;
+            units[box][unitSize[box]++] = node;
+        }
+
+        // Смежность: множество соседей вершины node начинается со слова node * words
+        final int words = Bitboard.words(cells);
+        final long[] adjacency = new long[cells * words];
+        neighbours = new int[cells][];
+        for (int node = 0; node < cells; node++) {
+            final int offset = node * words;
+            for (int other = 0; other < cells; other++) {
+                if (other != node && (rowOf[node] == rowOf[other] || columnOf[node] == columnOf[other]
+                        || boxOf[node] == boxOf[other])) {
+                    Bitboard.set(adjacency, offset, other);
+                }
+            }
+            neighbours[node] = new int[Bitboard.cardinality(adjacency, offset, words)];
+            for (int other = Bitboard.nextSetBit(adjacency, offset, words, 0), i = 0; other >= 0;
+                 other = Bitboard.nextSetBit(adjacency, offset, words, other + 1)) {
+                neighbours[node][i++] = other;
+            }
+        }
+
+        final int numOfSegments = size * 2 * boxSize;
+        segments = new int[numOfSegments][];
+        segmentBoxRest = new int[numOfSegments][];
+        segmentLineRest = new int[numOfSegments][];
+        int segment = 0;
+        for (int box = 0; box < size; box++) {
+            // Строки 0..size-1 и колонки size..2*size-1, проходящие через квадрат
+            for (int line = 0; line < 2 * size; line++) {
+                final boolean crosses = line < size
+                        ? line / boxSize == box / boxSize
+                        : (line - size) / boxSize == box % boxSize;
+                if (!crosses) {
+                    continue;
+                }
+                final int[] inSegment = new int[boxSize];
+                final int[] boxRest = new int[size - boxSize];
+                final int[] lineRest = new int[size - boxSize];
+                int inSegmentSize = 0;
+                int boxRestSize = 0;
+                int lineRestSize = 0;
+                for (int node = 0; node < cells; node++) {
+                    final boolean inBox = boxOf[node] == box;
+                    final boolean inLine = line < size ? rowOf[node] == line : columnOf[node] == line - size;
+                    if (inBox && inLine) {
+                        inSegment[inSegmentSize++] = node;
+                    } else if (inBox) {
+                        boxRest[boxRestSize++] = node;
+                    } else if (inLine) {
+                        lineRest[lineRestSize++] = node;
+                    }
+                }
+                segments[segment] = inSegment;
+                segmentBoxRest[segment] = boxRest;
+                segmentLineRest[segment] = lineRest;
+                segment++;
+            }
+        }
+    }
+
+    /**
+     * @param boxSize размер квадрата N, от {@value #MIN_BOX_SIZE} до {@value #MAX_BOX_SIZE}
+     */
+    public static Board of(int boxSize) {
+        if (boxSize < MIN_BOX_SIZE || boxSize > MAX_BOX_SIZE) {
+            throw new IllegalArgumentException("Box size must be between " + MIN_BOX_SIZE + " and " + MAX_BOX_SIZE);
+        }
+        return BOARDS[boxSize];
+    }
+
+    /**
+     * @return обычное поле 9 x 9
+     */
+    public static Board standard() {
+        return STANDARD;
+    }
+
+    /**
+     * @param cells количество вершин: 16, 81, 256 или 625
+     * @return поле с таким количеством вершин или null
+     */
+    static Board ofCells(int cells) {
+        for (int boxSize = MIN_BOX_SIZE; boxSize <= MAX_BOX_SIZE; boxSize++) {
+            if (BOARDS[boxSize].cells == cells) {
+                return BOARDS[boxSize];
+            }
+        }
+        return null;
+    }
+
+    public int boxSize() {
+        return boxSize;
+    }
+
+    /**
+     * @return длина строки, она же количество цветов
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return количество вершин
+     */
+    public int cells() {
+        return cells;
+    }
+
+    /**
+     * @return маска цвета, 0 для цвета 0
+     */
+    static int colorBit(int color) {
+        return color == 0 ? 0 : 1 << (color - 1);
+    }
+
+    /**
+     * @param example строка из {@link #cells()} символов: 0 или '.' - неокрашенная вершина, 1-9, A-P - цвет
+     * @return массив окраски вершин
+     */
+    public int[] parse(String example) {
+        if (example == null || example.length() != cells) {
+            throw new IllegalArgumentException("Example must be string of " + cells + " characters");
+        }
+        final int[] nodes = new int[cells];
+        for (int i = 0; i < cells; i++) {
+            nodes[i] = color(example.charAt(i), i);
+        }
+        return nodes;
+    }
+
+    /**
+     * Разбор примера из ASCII байтов без промежуточной строки
+     * @param data байты в формате {@link #parse(String)}, пример - {@link #cells()} байт с позиции offset
+     * @param nodes массив из {@link #cells()} элементов для результата
+     * @return nodes
+     */
+    public int[] parse(byte[] data, int offset, int[] nodes) {
+        if (offset < 0 || offset + cells > data.length || nodes.length != cells) {
+            throw new IllegalArgumentException("Example must be " + cells + " bytes");
+        }
+        for (int i = 0; i < cells; i++) {
+            nodes[i] = color((char) (data[offset + i] & 0xFF), i);
+        }
+        return nodes;
+    }
+
+    /**
+     * Проверка массива окраски перед решением: длина {@link #cells()}, цвета 0..{@link #size()}
+     */
+    void check(int[] nodes) {
+        if (nodes == null || nodes.length != cells) {
+            throw new IllegalArgumentException("Example must have " + cells + " nodes");
+        }
+        for (int i = 0; i < cells; i++) {
+            if (nodes[i] < 0 || nodes[i] > size) {
+                throw new IllegalArgumentException("Unexpected color " + nodes[i] + " at " + i);
+            }
+        }
+    }
+
+    private int color(char c, int position) {
+        final int color = c == '.' ? 0 : Character.digit(c, RADIX);
+        if (color < 0 || color > size) {
+            throw new IllegalArgumentException("Unexpected character '" + c + "' at " + position);
+        }
+        return color;
+    }
+
+    /**
+     * @return строка в формате {@link #parse(String)} или пустая строка для null
+     */
+    public String toString(int[] nodes) {
+        if (nodes == null) {
+            return "";
+        }
+        final char[] chars = new char[nodes.length];
+        write(nodes, chars, 0);
+        return new String(chars);
+    }
+
+    /**
+     * Записывает окраску вершин символами формата {@link #parse(String)} в массив с позиции offset
+     * @return позиция после записанного
+     */
+    public int write(int[] nodes, char[] out, int offset) {
+        for (int color : nodes) {
+            out[offset++] = SYMBOLS[color];
+        }
+        return offset;
+    }
+
+    /**
+     * Вариант {@link #write(int[], char[], int)} для ASCII байтов
+     */
+    public int write(int[] nodes, byte[] out, int offset) {
+        for (int color : nodes) {
+            out[offset++] = (byte) SYMBOLS[color];
+        }
+        return offset;
+    }
+
+    /**
+     * @return true, если все вершины окрашены и в каждой строке, колонке и квадрате есть все цвета
+     */
+    public boolean isSolution(int[] nodes) {
+        if (nodes == null || nodes.length != cells) {
+            return false;
+        }
+        for (int[] unit : units) {
+            int colors = 0;
+            for (int node : unit) {
+                colors |= colorBit(nodes[node]);
+            }
+            if (colors != allColors) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "Board{" + size + "x" + size + '}';
+    }
+}
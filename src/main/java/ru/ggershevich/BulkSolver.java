@@ -0,0 +1,201 @@
+package ru.ggershevich;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Решение наборов примеров через java.util.stream для встраивания в приложения.
+ * <p>
+ * {@link #puzzles(byte[])} разбирает примеры из ASCII текста (по примеру в строке) прямо в массивы окраски вершин,
+ * без промежуточных строк. Источник делится пополам по границам строк, поэтому {@code .parallel()} распределяет
+ * примеры по потокам общего пула. Состояние перебора {@link ColoringSolver} создается один раз на поток
+ * и переиспользуется, так что на пример не создается ничего, кроме массива решения.
+ * <p>
+ * {@link #solveAll(byte[], boolean)} записывает решения подряд в один byte[] - без String на пример.
+ */
+public final class BulkSolver {
+    private final Solver solver;
+    private final Board board;
+    /**
+     * Буфер разбора примера для {@link #solveAll(byte[], boolean)}, по одному на поток
+     */
+    private final ThreadLocal<int[]> scratch;
+
+    /**
+     * Алгоритм раскрашивания с настройками по умолчанию
+     */
+    public BulkSolver() {
+        this(new ColoringSolver());
+    }
+
+    /**
+     * @param solver алгоритм решения. Размер поля берется из настроек {@link ColoringSolver}, для остальных - 9 x 9
+     */
+    public BulkSolver(Solver solver) {
+        if (solver == null) {
+            throw new IllegalArgumentException("Solver must not be null");
+        }
+        this.solver = solver;
+        this.board = solver instanceof ColoringSolver ? ((ColoringSolver) solver).config().board() : Board.standard();
+        this.scratch = ThreadLocal.withInitial(() -> new int[board.cells]);
+    }
+
+    public Board board() {
+        return board;
+    }
+
+    /**
+     * Решает примеры по мере чтения из потока. Параллельность и порядок определяются потоком примеров
+     * @return поток результатов в порядке примеров (для упорядоченного потока)
+     */
+    public Stream<SolveResult> solve(Stream<int[]> puzzles) {
+        return puzzles.map(nodes -> solver.solve(nodes, SolveLimits.none()));
+    }
+
+    /**
+     * Вариант {@link #solve(Stream)} для коллекции. Коллекции JDK делят свои Spliterator, поэтому
+     * результат можно сделать параллельным вызовом {@code .parallel()}
+     */
+    public Stream<SolveResult> solve(Iterable<int[]> puzzles) {
+        return solve(StreamSupport.stream(puzzles.spliterator(), false));
+    }
+
+    /**
+     * @param text ASCII текст: по примеру в строке в формате {@link Board#parse(String)}, пустые строки пропускаются
+     * @return последовательный поток примеров, для параллельного разбора и решения - {@code .parallel()}.
+     * Строка другой длины или с недопустимым символом прерывает поток {@link IllegalArgumentException}
+     */
+    public Stream<int[]> puzzles(byte[] text) {
+        return StreamSupport.stream(new LineSpliterator(board, text, 0, text.length), false);
+    }
+
+    /**
+     * Решает все примеры текста и записывает ответы в один массив: по строке из {@link Board#cells()} символов
+     * и '\n' на каждый пример в порядке входа. Пример без решения - строка из нулей
+     * @param parallel решать в потоках общего пула
+     * @throws IllegalArgumentException если строка текста не является примером
+     */
+    public byte[] solveAll(byte[] text, boolean parallel) {
+        final int[] starts = lineStarts(text);
+        final int lineLength = board.cells + 1;
+        final byte[] out = new byte[starts.length * lineLength];
+        final IntStream indexes = IntStream.range(0, starts.length);
+        (parallel ? indexes.parallel() : indexes).forEach(i -> {
+            final int[] solution = solver.solve(board.parse(text, starts[i], scratch.get()));
+            final int offset = i * lineLength;
+            if (solution != null) {
+                board.write(solution, out, offset);
+            } else {
+                Arrays.fill(out, offset, offset + board.cells, (byte) '0');
+            }
+            out[offset + board.cells] = '\n';
+        });
+        return out;
+    }
+
+    /**
+     * @return начала непустых строк текста
+     */
+    private int[] lineStarts(byte[] text) {
+        int[] starts = new int[Math.max(16, text.length / (board.cells + 1) + 1)];
+        int count = 0;
+        int line = 0;
+        for (int position = 0; position < text.length; ) {
+            line++;
+            final int end = lineEnd(text, position, text.length);
+            final int length = lineLength(text, position, end);
+            if (length > 0) {
+                if (length != board.cells) {
+                    throw new IllegalArgumentException("Line " + line + " must have " + board.cells + " characters");
+                }
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = position;
+            }
+            position = end + 1;
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    /**
+     * @return позиция '\n' строки, начинающейся с from, или to
+     */
+    private static int lineEnd(byte[] text, int from, int to) {
+        int end = from;
+        while (end < to && text[end] != '\n') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return длина строки без '\r' в конце
+     */
+    private static int lineLength(byte[] text, int from, int end) {
+        return end > from && text[end - 1] == '\r' ? end - from - 1 : end - from;
+    }
+
+    /**
+     * Примеры из части текста [position, end). Делится пополам по ближайшей к середине границе строк
+     */
+    private static final class LineSpliterator implements Spliterator<int[]> {
+        private final Board board;
+        private final byte[] text;
+        private final int end;
+        private int position;
+
+        LineSpliterator(Board board, byte[] text, int position, int end) {
+            this.board = board;
+            this.text = text;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            while (position < end) {
+                final int lineEnd = lineEnd(text, position, end);
+                final int length = lineLength(text, position, lineEnd);
+                final int start = position;
+                position = lineEnd + 1;
+                if (length == 0) {
+                    continue;
+                }
+                if (length != board.cells) {
+                    throw new IllegalArgumentException("Line at byte " + start + " must have "
+                            + board.cells + " characters");
+                }
+                // Каждый пример - свой массив: потребитель может хранить его после вызова
+                action.accept(board.parse(text, start, new int[board.cells]));
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            final int middle = lineEnd(text, position + (end - position) / 2, end);
+            if (middle >= end - 1 || middle - position < board.cells) {
+                return null;
+            }
+            final Spliterator<int[]> prefix = new LineSpliterator(board, text, position, middle + 1);
+            position = middle + 1;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (end - position) / (board.cells + 1);
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package ru.ggershevich;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш решений поверх другого {@link Solver}.
+ * <p>
+ * Сначала пример ищется по точному совпадению. Если его нет, кэш ищет двойника - пример с перенумерованными
+ * цветами, переставленными строками, колонками, полосами, стопками или транспонированный - по канонической форме
+ * ({@link Symmetry}). Поиск канонической формы занимает около миллисекунды, это дольше решения большинства
+ * примеров, поэтому он выполняется, только если в кэше есть пример с тем же инвариантом (количества заполненных
+ * вершин в строках, колонках и цветах без учета порядка) и решение этого примера заняло больше процессорного
+ * времени, чем в среднем занимает поиск формы.
+ * Решение двойника переводится в пространство запроса. Примеры без решения тоже кэшируются.
+ * <p>
+ * Кэш ограничен {@code capacity} записями и вытесняет давно не использованные (LRU). Решение выполняется
+ * вне блокировки, поэтому один и тот же пример, запрошенный одновременно, может решиться дважды.
+ * Результат решения, прерванного ограничением ({@link SolveLimits}), не кэшируется.
+ */
+public class CachingSolver implements Solver {
+    /**
+     * Отметка примера без решения
+     */
+    private static final int[] NOT_FOUND = new int[0];
+    /**
+     * Оценка времени поиска канонической формы до первого замера
+     */
+    static final long INITIAL_CANONICAL_NANOS = 1_000_000;
+    /**
+     * Порог берется из скользящего среднего времени поиска канонической формы
+     */
+    static final long ADAPTIVE = -1;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final Solver delegate;
+    private final int capacity;
+    private final long canonicalThreshold;
+    private final Map<String, CachedSolution> cache;
+    /**
+     * Записи кэша по инварианту, изменяется вместе с {@link #cache}
+     */
+    private final Map<Long, List<CachedSolution>> byInvariant = new HashMap<>();
+    private volatile long canonicalNanos = INITIAL_CANONICAL_NANOS;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    /**
+     * @param capacity наибольшее количество записей в кэше
+     */
+    public CachingSolver(Solver delegate, int capacity) {
+        this(delegate, capacity, ADAPTIVE);
+    }
+
+    /**
+     * @param canonicalThreshold двойник ищется для примеров, решение которых длилось дольше порога (нс);
+     *                           {@link #ADAPTIVE} - дольше среднего времени поиска канонической формы
+     */
+    CachingSolver(Solver delegate, int capacity, long canonicalThreshold) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Solver must not be null");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Cache capacity must be positive");
+        }
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.canonicalThreshold = canonicalThreshold;
+        this.cache = new LinkedHashMap<String, CachedSolution>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSolution> eldest) {
+                if (size() > CachingSolver.this.capacity) {
+                    evictions.increment();
+                    unindex(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public int[] solve(int[] nodes) {
+        return solve(nodes, SolveLimits.none()).solution();
+    }
+
+    @Override
+    public int[] solve(int[] nodes, AtomicBoolean cancelled) {
+        return solve(nodes, cancelled != null ? SolveLimits.none().withCancellation(cancelled) : SolveLimits.none()).solution();
+    }
+
+    /**
+     * Попадание в кэш возвращает результат без статистики перебора. Прерванное ограничением решение не кэшируется
+     */
+    @Override
+    public SolveResult solve(int[] nodes, SolveLimits limits) {
+        final long start = System.nanoTime();
+        if (nodes.length != SudokuSolver.NUM_OF_NODES) {
+            // Каноническая форма и инвариант есть только для поля 9 x 9
+            bypassed.increment();
+            return delegate.solve(nodes, limits);
+        }
+
+        final String key = SudokuSolver.toString(nodes);
+        final long invariant = invariant(nodes);
+        final CachedSolution exact;
+        List<CachedSolution> candidates = null;
+        synchronized (cache) {
+            exact = cache.get(key);
+            final List<CachedSolution> similar = exact == null ? byInvariant.get(invariant) : null;
+            if (similar != null) {
+                final long threshold = threshold();
+                for (CachedSolution entry : similar) {
+                    if (entry.solveNanos > threshold) {
+                        if (candidates == null) {
+                            candidates = new ArrayList<>(1);
+                        }
+                        candidates.add(entry);
+                    }
+                }
+            }
+        }
+        if (exact != null) {
+            hits.increment();
+            return hit(exact.solution == NOT_FOUND ? null : exact.solution.clone(), start);
+        }
+
+        final Symmetry symmetry = candidates == null ? null : canonical(nodes);
+        if (symmetry != null) {
+            for (CachedSolution candidate : candidates) {
+                final Symmetry twin = candidate.symmetry();
+                if (twin != null && Arrays.equals(twin.canonical(), symmetry.canonical())) {
+                    final int[] solution = candidate.solution == NOT_FOUND ? NOT_FOUND
+                            : symmetry.invert(twin.apply(candidate.solution));
+                    // Время решения двойника не измерено: он находится по точному совпадению, но сам двойников не ищет
+                    put(key, new CachedSolution(invariant, nodes.clone(), solution, 0, symmetry));
+                    hits.increment();
+                    return hit(solution == NOT_FOUND ? null : solution.clone(), start);
+                }
+            }
+        }
+
+        misses.increment();
+        final long solveStart = cpuTime();
+        final SolveResult result = delegate.solve(nodes, limits);
+        if (!result.status().isInterrupted()) {
+            final int[] solution = result.isSolved() ? result.solution().clone() : NOT_FOUND;
+            put(key, new CachedSolution(invariant, nodes.clone(), solution, cpuTime() - solveStart, symmetry));
+        }
+        return result;
+    }
+
+    private static SolveResult hit(int[] solution, long start) {
+        return new SolveResult(solution, new SolveStats(0, 0, 0, 0, System.nanoTime() - start));
+    }
+
+    private long threshold() {
+        return canonicalThreshold == ADAPTIVE ? canonicalNanos : canonicalThreshold;
+    }
+
+    /**
+     * Ищет каноническую форму и обновляет скользящее среднее времени поиска
+     */
+    private Symmetry canonical(int[] nodes) {
+        final long start = cpuTime();
+        final Symmetry symmetry = Symmetry.of(nodes);
+        final long elapsed = cpuTime() - start;
+        final long average = canonicalNanos;
+        canonicalNanos = average + (elapsed - average) / 8;
+        return symmetry;
+    }
+
+    /**
+     * Процессорное время потока, без пауз сборки мусора и вытеснения другими потоками: по случайной паузе
+     * быстрый пример не должен считаться медленным. Если время потока недоступно - обычное время
+     */
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private void put(String key, CachedSolution entry) {
+        synchronized (cache) {
+            final CachedSolution previous = cache.put(key, entry);
+            if (previous != null) {
+                unindex(previous);
+            }
+            byInvariant.computeIfAbsent(entry.invariant, k -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    private void unindex(CachedSolution entry) {
+        final List<CachedSolution> similar = byInvariant.get(entry.invariant);
+        if (similar != null) {
+            similar.remove(entry);
+            if (similar.isEmpty()) {
+                byInvariant.remove(entry.invariant);
+            }
+        }
+    }
+
+    /**
+     * Хэш величин, которые не меняются при преобразованиях {@link Symmetry}: количества заполненных вершин
+     * в строках (отсортированные внутри полос, полосы отсортированы) и так же в колонках, пара строки-колонки
+     * без учета порядка (транспонирование), отсортированные количества вершин каждого цвета
+     */
+    static long invariant(int[] nodes) {
+        final int[] rows = new int[9];
+        final int[] columns = new int[9];
+        final int[] colors = new int[10];
+        for (int node = 0; node < SudokuSolver.NUM_OF_NODES; node++) {
+            if (nodes[node] != 0) {
+                rows[node / 9]++;
+                columns[node % 9]++;
+                colors[nodes[node]]++;
+            }
+        }
+        final long rowSignature = signature(rows);
+        final long columnSignature = signature(columns);
+        long hash = Math.min(rowSignature, columnSignature) * 1_000_000_000L + Math.max(rowSignature, columnSignature);
+        Arrays.sort(colors, 1, colors.length);
+        for (int color = 1; color < colors.length; color++) {
+            hash = 31 * hash + colors[color];
+        }
+        return hash;
+    }
+
+    /**
+     * @return отсортированные тройки количеств по полосам (стопкам), записанные десятичными цифрами по возрастанию
+     */
+    private static long signature(int[] counts) {
+        final int[] groups = new int[3];
+        for (int group = 0; group < 3; group++) {
+            Arrays.sort(counts, group * 3, group * 3 + 3);
+            groups[group] = counts[group * 3] * 100 + counts[group * 3 + 1] * 10 + counts[group * 3 + 2];
+        }
+        Arrays.sort(groups);
+        return groups[0] * 1_000_000L + groups[1] * 1_000L + groups[2];
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return количество примеров, решенных без кэша: поле не 9 x 9
+     */
+    public long bypassed() {
+        return bypassed.sum();
+    }
+
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Пример, его решение в пространстве примера и время решения (0, если запись найдена через двойника).
+     * Каноническая форма ищется при первом сравнении с двойником; одновременный поиск из разных потоков
+     * дает тот же результат
+     */
+    private static final class CachedSolution {
+        final long invariant;
+        final int[] puzzle;
+        final int[] solution;
+        final long solveNanos;
+        private volatile Symmetry symmetry;
+        private volatile boolean searched;
+
+        CachedSolution(long invariant, int[] puzzle, int[] solution, long solveNanos, Symmetry symmetry) {
+            this.invariant = invariant;
+            this.puzzle = puzzle;
+            this.solution = solution;
+            this.solveNanos = solveNanos;
+            this.symmetry = symmetry;
+            this.searched = symmetry != null;
+        }
+
+        /**
+         * @return null, если каноническую форму искать слишком долго
+         */
+        Symmetry symmetry() {
+            if (!searched) {
+                symmetry = Symmetry.of(puzzle);
+                searched = true;
+            }
+            return symmetry;
+        }
+    }
+}
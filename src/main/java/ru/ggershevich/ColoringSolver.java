@@ -0,0 +1,197 @@
+package ru.ggershevich;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Точный алгоритм раскрашивания, см. {@link SearchState}.
+ * <p>
+ * Экземпляр не изменяется после создания и может использоваться из любого количества потоков. Состояние перебора
+ * (массивы окраски, маски доступных цветов, стек изменений, буферы комбинаций) создается один раз на поток
+ * и переиспользуется, поэтому независимые решения в разных потоках не разделяют изменяемых данных.
+ */
+public class ColoringSolver implements Solver {
+    private final SolverConfig config;
+    private final ThreadLocal<SearchState> states;
+    /**
+     * Исключенные кандидаты за все решения экземпляра по {@link Propagation.Technique#ordinal()}
+     */
+    private final LongAdder[] eliminations = new LongAdder[Propagation.Technique.values().length];
+
+    /**
+     * С настройками по умолчанию
+     * @see SolverConfig#defaults()
+     */
+    public ColoringSolver() {
+        this(SolverConfig.defaults());
+    }
+
+    /**
+     * @param propagation техники исключения кандидатов, применяемые перед каждым ветвлением
+     */
+    public ColoringSolver(Propagation propagation) {
+        this(SolverConfig.defaults().withPropagation(propagation));
+    }
+
+    public ColoringSolver(SolverConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("Config must not be null");
+        }
+        this.config = config;
+        this.states = ThreadLocal.withInitial(() -> new SearchState(config));
+        for (int i = 0; i < eliminations.length; i++) {
+            eliminations[i] = new LongAdder();
+        }
+    }
+
+    public SolverConfig config() {
+        return config;
+    }
+
+    /**
+     * @return сколько кандидатов исключила техника за все решения этим экземпляром (для одиночек - сколько вершин
+     * окрашено). Для одного решения - {@link SolveStats#eliminations(Propagation.Technique)}
+     */
+    public long eliminations(Propagation.Technique technique) {
+        return eliminations[technique.ordinal()].sum();
+    }
+
+    @Override
+    public int[] solve(int[] nodes) {
+        return solve(nodes, SolveLimits.none()).solution();
+    }
+
+    /**
+     * Перебор проверяет флаг перед каждой комбинацией
+     */
+    @Override
+    public int[] solve(int[] nodes, AtomicBoolean cancelled) {
+        final SolveLimits limits = cancelled != null ? SolveLimits.none().withCancellation(cancelled) : SolveLimits.none();
+        return solve(nodes, limits).solution();
+    }
+
+    /**
+     * @param example строка из {@link Board#cells()} символов в формате {@link Board#parse(String)}
+     * @return решение в том же виде или пустая строка, если решения нет
+     */
+    @Override
+    public String solve(String example) {
+        return config.board().toString(solve(config.board().parse(example)));
+    }
+
+    /**
+     * Решение вместе со статистикой перебора. Если решение длилось дольше порога, записывается событие JFR
+     * {@link SolveEvent} (только при включенной записи JFR)
+     */
+    public SolveResult solveWithStats(int[] nodes) {
+        return solve(nodes, SolveLimits.none());
+    }
+
+    /**
+     * Бюджет и флаг прерывания проверяются перед каждой комбинацией, срок - раз в
+     * {@value SearchState#DEADLINE_CHECK_INTERVAL} комбинаций. Статистика и событие JFR - как у
+     * {@link #solveWithStats(int[])}
+     */
+    @Override
+    public SolveResult solve(int[] nodes, SolveLimits limits) {
+        final SolveEvent event = new SolveEvent();
+        event.begin();
+        final long start = System.nanoTime();
+        final SearchState state = acquire(nodes);
+        try {
+            state.limit(limits);
+            final boolean solved = state.search(0);
+            final SolveStats stats = state.stats(System.nanoTime() - start);
+            final SolveResult.Status status = solved ? SolveResult.Status.SOLVED
+                    : state.interruption() != null ? state.interruption() : SolveResult.Status.NO_SOLUTION;
+            state.flushEliminations(eliminations);
+            event.end();
+            if (event.shouldCommit()) {
+                event.puzzle = SudokuSolver.toString(nodes);
+                event.solved = solved;
+                event.status = status.name();
+                event.combinations = stats.combinations();
+                event.maxDepth = stats.maxDepth();
+                event.nakedSingles = stats.nakedSingles();
+                event.backtracks = stats.backtracks();
+                event.commit();
+            }
+            return new SolveResult(status, solved ? state.nodes() : null, stats);
+        } finally {
+            release(state);
+        }
+    }
+
+    /**
+     * Считает решения, продолжая перебор после первого найденного. Перебор прекращается, как только найдено
+     * limit решений, поэтому для проверки единственности достаточно limit = 2
+     * @param limit сколько решений достаточно найти, не меньше 1
+     * @return количество решений, не больше limit
+     */
+    public long countSolutions(int[] nodes, long limit) {
+        final SolutionCounter counter = new SolutionCounter(limit);
+        final SearchState state = acquire(nodes);
+        try {
+            state.count(0, counter);
+            state.flushEliminations(eliminations);
+            return counter.count();
+        } finally {
+            release(state);
+        }
+    }
+
+    /**
+     * @return true, если у примера ровно одно решение
+     */
+    public boolean isUnique(int[] nodes) {
+        return countSolutions(nodes, 2) == 1;
+    }
+
+    /**
+     * Параллельный поиск решения. Перебор комбинаций на верхних уровнях рекурсии разбивается на задачи ForkJoin,
+     * нижние уровни перебираются последовательно. Первое найденное решение прерывает все остальные задачи.
+     * @param pool пул, в котором будет выполняться поиск
+     * @return массив окраски вершин или null, если решения нет
+     */
+    public int[] solveParallel(int[] nodes, ForkJoinPool pool) {
+        return pool.invoke(new ParallelSearch(config, nodes, eliminations));
+    }
+
+    /**
+     * Параллельный вариант {@link #countSolutions(int[], long)}: ветки верхних уровней перебора считаются
+     * в задачах ForkJoin, как у {@link #solveParallel(int[], ForkJoinPool)}
+     */
+    public long countSolutionsParallel(int[] nodes, long limit, ForkJoinPool pool) {
+        final SolutionCounter counter = new SolutionCounter(limit);
+        pool.invoke(new ParallelSearch(config, nodes, counter, eliminations));
+        return counter.count();
+    }
+
+    /**
+     * Состояние потока с загруженным примером. Если состояние потока уже занято (решение вызвано повторно
+     * из того же потока, например из задачи ForkJoin во время ожидания), создается отдельное состояние
+     * без таблицы тупиков
+     */
+    private SearchState acquire(int[] nodes) {
+        if (nodes.length != config.board().cells()) {
+            throw new IllegalArgumentException("Example must have " + config.board().cells() + " nodes");
+        }
+        SearchState state = states.get();
+        if (state.inUse) {
+            state = new SearchState(config.board(), config.propagation(), config.branching());
+        }
+        state.inUse = true;
+        state.load(nodes);
+        return state;
+    }
+
+    private static void release(SearchState state) {
+        state.inUse = false;
+    }
+
+    @Override
+    public String toString() {
+        return "ColoringSolver{" + config + '}';
+    }
+}
@@ -0,0 +1,534 @@
+package ru.ggershevich;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Распределенный перебор дерева решений по нескольким процессам: подсчет решений и поиск решения для задач,
+ * которым мало одной JVM (полный подсчет, поиск минимальных примеров).
+ * <p>
+ * Задание (work unit) - окраска вершин, полученная из примера несколькими уровнями ветвления {@link SearchState}:
+ * ветки одного ветвления не пересекаются и вместе содержат все решения, поэтому количество решений примера -
+ * сумма количеств по заданиям. Координатор ({@link Coordinator}) раскрывает пример в ширину до нужного количества
+ * заданий и раздает их по TCP исполнителям ({@link Worker}), каждый из которых может быть отдельным процессом.
+ * <p>
+ * Исполнитель считает задание с бюджетом комбинаций. Если бюджет исчерпан, задание тяжелое: исполнитель не досчитывает
+ * его, а возвращает ветки его первого ветвления, и координатор ставит их в очередь как новые задания. Поэтому
+ * тяжелая часть дерева дробится, пока ее куски не распределятся по всем исполнителям. Задание отключившегося
+ * исполнителя возвращается в очередь.
+ * <p>
+ * Протокол: после подключения координатор отправляет {@link #MAGIC}, {@link #VERSION} и размер квадрата поля.
+ * Задание - байт 'U', лимит решений, бюджет комбинаций и окраска в формате {@link Board#parse(String)}. Ответ -
+ * 'C', количество решений и, если есть, первое решение, либо 'P', количество веток и их окраски. 'S' завершает
+ * исполнителя.
+ */
+public final class DistributedSearch {
+    /**
+     * "SUDW"
+     */
+    static final int MAGIC = 0x53554457;
+    static final int VERSION = 1;
+    /**
+     * Бюджет комбинаций задания по умолчанию: доли секунды на поле 9 x 9
+     */
+    public static final long DEFAULT_UNIT_BUDGET = 100_000;
+
+    private static final byte UNIT = 'U';
+    private static final byte STOP = 'S';
+    private static final byte COUNT = 'C';
+    private static final byte SPLIT = 'P';
+
+    private DistributedSearch() {
+    }
+
+    /**
+     * Ветки первого ветвления примера. Решенный пример - единственная ветка, у тупика веток нет
+     * @return окраски вершин веток
+     */
+    static List<int[]> split(SolverConfig config, int[] nodes) {
+        final SearchState state = new SearchState(config.board(), nodes, config.propagation(), config.branching());
+        final List<int[]> branches = new ArrayList<>();
+        final SearchState.Step step = state.branch(0);
+        if (step == SearchState.Step.SOLVED) {
+            branches.add(state.nodes());
+        } else if (step == SearchState.Step.BRANCH) {
+            boolean first = true;
+            while (state.nextCombination(0, first)) {
+                first = false;
+                branches.add(state.nodes());
+            }
+        }
+        return branches;
+    }
+
+    /**
+     * Раскрывает пример в ширину, пока заданий меньше count. Задания без ветвления (решенные) не раскрываются
+     */
+    static Deque<int[]> frontier(SolverConfig config, int[] nodes, int count) {
+        final Deque<int[]> units = new ArrayDeque<>();
+        final Deque<int[]> leaves = new ArrayDeque<>();
+        units.add(nodes.clone());
+        while (!units.isEmpty() && units.size() + leaves.size() < count) {
+            final int[] unit = units.poll();
+            final List<int[]> branches = split(config, unit);
+            if (branches.size() == 1 && isColored(branches.get(0))) {
+                leaves.add(branches.get(0));
+            } else {
+                units.addAll(branches);
+            }
+        }
+        units.addAll(leaves);
+        return units;
+    }
+
+    private static boolean isColored(int[] nodes) {
+        for (int color : nodes) {
+            if (color == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Запускает исполнителя отдельным процессом JVM с тем же classpath
+     */
+    static Process startWorker(int port) throws IOException {
+        final String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), Main.class.getName(),
+                "--worker", "localhost:" + port)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .redirectInput(new File(System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null"))
+                .start();
+    }
+
+    private static void writeNodes(DataOutputStream out, Board board, int[] nodes, byte[] buffer) throws IOException {
+        board.write(nodes, buffer, 0);
+        out.write(buffer, 0, board.cells);
+    }
+
+    private static int[] readNodes(DataInputStream in, Board board, byte[] buffer) throws IOException {
+        in.readFully(buffer, 0, board.cells);
+        try {
+            return board.parse(buffer, 0, new int[board.cells]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupted work unit", e);
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Соединение уже не используется
+        }
+    }
+
+    /**
+     * Итог распределенного перебора
+     */
+    public static final class Result {
+        private final long count;
+        private final int[] solution;
+        private final long units;
+        private final long splits;
+
+        Result(long count, int[] solution, long units, long splits) {
+            this.count = count;
+            this.solution = solution;
+            this.units = units;
+            this.splits = splits;
+        }
+
+        /**
+         * @return количество решений, не больше лимита
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return одно из найденных решений или null
+         */
+        public int[] solution() {
+            return solution;
+        }
+
+        /**
+         * @return сколько заданий посчитано
+         */
+        public long units() {
+            return units;
+        }
+
+        /**
+         * @return сколько тяжелых заданий раздроблено
+         */
+        public long splits() {
+            return splits;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{count=" + count + ", units=" + units + ", splits=" + splits + '}';
+        }
+    }
+
+    /**
+     * Координатор: принимает подключения исполнителей и раздает им задания. Одновременно выполняется одно
+     * задание {@link #count(int[], long, int)}, исполнители остаются подключенными до {@link #close()}
+     */
+    public static final class Coordinator implements Closeable {
+        private final SolverConfig config;
+        private final long unitBudget;
+        private final ServerSocket server;
+        /**
+         * Сокеты исполнителей, которым отправлено задание: {@link #close()} закрывает их, чтобы прервать ожидание ответа
+         */
+        private final List<Socket> busy = new ArrayList<>();
+
+        private final Object lock = new Object();
+        private boolean closed;
+        private int workers;
+        /**
+         * Номер текущего задания: ответы на задания прошлого подсчета не учитываются
+         */
+        private long job;
+        private boolean active;
+        private final Deque<int[]> queue = new ArrayDeque<>();
+        private int inFlight;
+        private long limit;
+        private long count;
+        private int[] solution;
+        private long units;
+        private long splits;
+
+        /**
+         * @param port порт на localhost, 0 - любой свободный, см. {@link #port()}
+         * @param unitBudget бюджет комбинаций задания, после которого оно дробится
+         */
+        public Coordinator(SolverConfig config, int port, long unitBudget) throws IOException {
+            this(config, InetAddress.getLoopbackAddress(), port, unitBudget);
+        }
+
+        /**
+         * @param bindAddress адрес, на котором принимаются исполнители. Проверки подлинности нет, поэтому адрес,
+         *                    доступный из чужой сети, позволяет кому угодно подключиться и вернуть неверный счет
+         * @param port порт, 0 - любой свободный, см. {@link #port()}
+         * @param unitBudget бюджет комбинаций задания, после которого оно дробится
+         */
+        public Coordinator(SolverConfig config, InetAddress bindAddress, int port, long unitBudget) throws IOException {
+            if (config == null) {
+                throw new IllegalArgumentException("Config must not be null");
+            }
+            if (unitBudget < 1) {
+                throw new IllegalArgumentException("Unit budget must be positive");
+            }
+            this.config = config;
+            this.unitBudget = unitBudget;
+            if (bindAddress == null) {
+                throw new IllegalArgumentException("Bind address must not be null");
+            }
+            this.server = new ServerSocket(port, 50, bindAddress);
+            final Thread acceptor = new Thread(this::accept, "coordinator-" + server.getLocalPort());
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        public int port() {
+            return server.getLocalPort();
+        }
+
+        /**
+         * @return количество подключенных исполнителей
+         */
+        public int workers() {
+            synchronized (lock) {
+                return workers;
+            }
+        }
+
+        /**
+         * Считает решения примера силами подключенных исполнителей. Ждет, пока подключится хотя бы один
+         * @param limit сколько решений достаточно найти, для поиска решения - 1
+         * @param initialUnits на сколько заданий раскрыть пример до раздачи, обычно в несколько раз больше исполнителей
+         * @throws IllegalStateException если координатор закрыт до окончания счета - частичный счет не возвращается
+         */
+        public Result count(int[] nodes, long limit, int initialUnits) throws InterruptedException {
+            if (nodes.length != config.board().cells()) {
+                throw new IllegalArgumentException("Example must have " + config.board().cells() + " nodes");
+            }
+            if (limit < 1) {
+                throw new IllegalArgumentException("Limit must be positive");
+            }
+            final Deque<int[]> frontier = frontier(config, nodes, initialUnits);
+            synchronized (lock) {
+                if (closed) {
+                    throw new IllegalStateException("Coordinator is closed");
+                }
+                if (active) {
+                    throw new IllegalStateException("Coordinator is busy");
+                }
+                job++;
+                this.limit = limit;
+                count = 0;
+                solution = null;
+                units = 0;
+                splits = 0;
+                inFlight = 0;
+                queue.clear();
+                queue.addAll(frontier);
+                active = !queue.isEmpty();
+                lock.notifyAll();
+                while (active && !closed) {
+                    lock.wait();
+                }
+                if (active) {
+                    throw new IllegalStateException("Coordinator closed before the count finished");
+                }
+                return new Result(Math.min(count, limit), solution, units, splits);
+            }
+        }
+
+        /**
+         * Останавливает исполнителей и закрывает порт
+         */
+        @Override
+        public void close() throws IOException {
+            synchronized (lock) {
+                // active не сбрасывается: незавершенный счет отличается от завершенного
+                closed = true;
+                lock.notifyAll();
+                // Свободные исполнители получат 'S', занятые - конец потока
+                for (Socket socket : busy) {
+                    closeQuietly(socket);
+                }
+            }
+            server.close();
+        }
+
+        private void accept() {
+            while (!server.isClosed()) {
+                final Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (IOException e) {
+                    // Порт закрыт
+                    return;
+                }
+                synchronized (lock) {
+                    workers++;
+                }
+                final Thread handler = new Thread(() -> serve(socket), "coordinator-worker-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            }
+        }
+
+        /**
+         * Раздает задания одному исполнителю, пока координатор не закрыт
+         */
+        private void serve(Socket socket) {
+            final Board board = config.board();
+            final byte[] buffer = new byte[board.cells];
+            int[] unit = null;
+            long unitJob = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(board.boxSize());
+                out.flush();
+                while (true) {
+                    final long remaining;
+                    synchronized (lock) {
+                        busy.remove(socket);
+                        while (!closed && queue.isEmpty()) {
+                            lock.wait();
+                        }
+                        if (closed) {
+                            break;
+                        }
+                        unit = queue.poll();
+                        unitJob = job;
+                        busy.add(socket);
+                        inFlight++;
+                        remaining = limit - count;
+                    }
+                    out.writeByte(UNIT);
+                    out.writeLong(remaining);
+                    out.writeLong(unitBudget);
+                    writeNodes(out, board, unit, buffer);
+                    out.flush();
+
+                    final byte type = in.readByte();
+                    if (type == COUNT) {
+                        final long found = in.readLong();
+                        final int[] first = in.readBoolean() ? readNodes(in, board, buffer) : null;
+                        counted(unitJob, found, first);
+                    } else if (type == SPLIT) {
+                        final int size = in.readInt();
+                        final List<int[]> branches = new ArrayList<>(size);
+                        for (int i = 0; i < size; i++) {
+                            branches.add(readNodes(in, board, buffer));
+                        }
+                        split(unitJob, branches);
+                    } else {
+                        throw new IOException("Unexpected reply " + type);
+                    }
+                    unit = null;
+                }
+                out.writeByte(STOP);
+                out.flush();
+            } catch (IOException e) {
+                // Исполнитель отключился, его задание вернется в очередь
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                closeQuietly(socket);
+                synchronized (lock) {
+                    workers--;
+                    busy.remove(socket);
+                    if (unit != null && unitJob == job && active) {
+                        inFlight--;
+                        queue.addFirst(unit);
+                    }
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        private void counted(long unitJob, long found, int[] first) {
+            synchronized (lock) {
+                if (unitJob != job || !active) {
+                    return;
+                }
+                inFlight--;
+                units++;
+                count += found;
+                if (solution == null) {
+                    solution = first;
+                }
+                if (count >= limit || (queue.isEmpty() && inFlight == 0)) {
+                    finish();
+                }
+            }
+        }
+
+        private void split(long unitJob, List<int[]> branches) {
+            synchronized (lock) {
+                if (unitJob != job || !active) {
+                    return;
+                }
+                inFlight--;
+                splits++;
+                // Ветки в начало очереди: тяжелое задание дробится раньше, чем раздаются остальные
+                for (int i = branches.size() - 1; i >= 0; i--) {
+                    queue.addFirst(branches.get(i));
+                }
+                if (queue.isEmpty() && inFlight == 0) {
+                    finish();
+                }
+                lock.notifyAll();
+            }
+        }
+
+        private void finish() {
+            active = false;
+            queue.clear();
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Исполнитель: считает задания координатора, пока тот не пришлет 'S' или не закроет соединение
+     */
+    public static final class Worker {
+        private Worker() {
+        }
+
+        /**
+         * @return сколько заданий посчитано и раздроблено
+         */
+        public static long run(String host, int port) throws IOException {
+            try (Socket socket = new Socket(host, port)) {
+                return serve(socket);
+            }
+        }
+
+        private static long serve(Socket socket) throws IOException {
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a sudoku coordinator or unsupported version");
+            }
+            final Board board;
+            try {
+                board = Board.of(in.readInt());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+            final SolverConfig config = SolverConfig.defaults().withBoard(board);
+            final SearchState state = new SearchState(config);
+            final byte[] buffer = new byte[board.cells];
+            long processed = 0;
+            while (true) {
+                final byte type;
+                try {
+                    type = in.readByte();
+                } catch (SocketException | EOFException e) {
+                    // Координатор закрыт без 'S' (сброс соединения или конец потока)
+                    return processed;
+                }
+                if (type == STOP) {
+                    return processed;
+                }
+                if (type != UNIT) {
+                    throw new IOException("Unexpected message " + type);
+                }
+                final long limit = in.readLong();
+                final long budget = in.readLong();
+                final int[] nodes = readNodes(in, board, buffer);
+
+                state.load(nodes);
+                state.limit(SolveLimits.none().withCombinationBudget(budget));
+                final SolutionCounter counter = new SolutionCounter(Math.max(1, limit));
+                state.count(0, counter);
+                if (state.interruption() != null) {
+                    final List<int[]> branches = split(config, nodes);
+                    out.writeByte(SPLIT);
+                    out.writeInt(branches.size());
+                    for (int[] branch : branches) {
+                        writeNodes(out, board, branch, buffer);
+                    }
+                } else {
+                    out.writeByte(COUNT);
+                    out.writeLong(counter.count());
+                    final int[] first = counter.first();
+                    out.writeBoolean(first != null);
+                    if (first != null) {
+                        writeNodes(out, board, first, buffer);
+                    }
+                }
+                out.flush();
+                processed++;
+            }
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package ru.ggershevich;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static ru.ggershevich.SudokuSolver.NUM_OF_NODES;
+import static ru.ggershevich.SudokuSolver.boxOf;
+import static ru.ggershevich.SudokuSolver.columnOf;
+import static ru.ggershevich.SudokuSolver.rowOf;
+
+/**
+ * Решение сведением к задаче точного покрытия: алгоритм X Кнута на танцующих связях (Dancing Links).
+ * <p>
+ * Строка матрицы - окраска вершины в цвет (81 * 9 = 729 строк). Колонка - ограничение, которое должно быть
+ * выполнено ровно один раз (4 * 81 = 324 колонки): вершина окрашена, в строке есть цвет, в колонке есть цвет,
+ * в квадрате есть цвет. Связи хранятся в массивах int, матрица строится один раз на поток и после каждого
+ * решения возвращается в исходное состояние, поэтому решение не создает объектов, кроме массива с ответом.
+ */
+public class DlxSolver implements Solver {
+    private static final int NUM_OF_COLORS = SudokuSolver.colorBitMap.length - 1;
+    private static final int NUM_OF_ROWS = NUM_OF_NODES * NUM_OF_COLORS;
+    private static final int NUM_OF_COLUMNS = 4 * NUM_OF_NODES;
+    private static final int ROOT = 0;
+
+    private final ThreadLocal<Matrix> matrix = ThreadLocal.withInitial(Matrix::new);
+
+    @Override
+    public int[] solve(int[] nodes) {
+        return solve(nodes, SolveLimits.none()).solution();
+    }
+
+    @Override
+    public int[] solve(int[] nodes, AtomicBoolean cancelled) {
+        return solve(nodes, cancelled != null ? SolveLimits.none().withCancellation(cancelled) : SolveLimits.none()).solution();
+    }
+
+    /**
+     * Комбинацией считается каждая выбранная строка матрицы. Бюджет и флаг проверяются перед каждой строкой,
+     * срок - раз в {@value SearchState#DEADLINE_CHECK_INTERVAL} строк
+     * @throws IllegalArgumentException если в массиве не 81 вершина или цвет вне 0-9
+     */
+    @Override
+    public SolveResult solve(int[] nodes, SolveLimits limits) {
+        try {
+            return matrix.get().solve(nodes, limits);
+        } catch (RuntimeException | Error e) {
+            // Матрица могла остаться частично покрытой внутри перебора - следующее решение потока строит новую
+            matrix.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * Матрица точного покрытия. Узел 0 - корень, узлы 1..324 - заголовки колонок, дальше по 4 узла на строку
+     */
+    private static final class Matrix {
+        private static final int SIZE = 1 + NUM_OF_COLUMNS + 4 * NUM_OF_ROWS;
+
+        private final int[] left = new int[SIZE];
+        private final int[] right = new int[SIZE];
+        private final int[] up = new int[SIZE];
+        private final int[] down = new int[SIZE];
+        private final int[] column = new int[SIZE];
+        private final int[] row = new int[SIZE];
+        private final int[] columnSize = new int[1 + NUM_OF_COLUMNS];
+        /**
+         * Первый узел каждой строки матрицы
+         */
+        private final int[] rowStart = new int[NUM_OF_ROWS];
+        /**
+         * Выбранные строки - стек решения
+         */
+        private final int[] selected = new int[NUM_OF_NODES];
+        private final boolean[] covered = new boolean[1 + NUM_OF_COLUMNS];
+
+        private SolveLimits limits;
+        private SolveResult.Status interruption;
+        private long rowsTried;
+        private long backtracks;
+        private int maxDepth;
+
+        Matrix() {
+            for (int c = 0; c <= NUM_OF_COLUMNS; c++) {
+                left[c] = c == 0 ? NUM_OF_COLUMNS : c - 1;
+                right[c] = c == NUM_OF_COLUMNS ? 0 : c + 1;
+                up[c] = c;
+                down[c] = c;
+                column[c] = c;
+            }
+
+            int node = NUM_OF_COLUMNS + 1;
+            for (int cell = 0; cell < NUM_OF_NODES; cell++) {
+                for (int color = 0; color < NUM_OF_COLORS; color++) {
+                    final int r = cell * NUM_OF_COLORS + color;
+                    rowStart[r] = node;
+                    final int[] columns = {
+                            1 + cell,
+                            1 + NUM_OF_NODES + rowOf[cell] * NUM_OF_COLORS + color,
+                            1 + 2 * NUM_OF_NODES + columnOf[cell] * NUM_OF_COLORS + color,
+                            1 + 3 * NUM_OF_NODES + boxOf[cell] * NUM_OF_COLORS + color,
+                    };
+                    for (int i = 0; i < columns.length; i++) {
+                        final int c = columns[i];
+                        column[node] = c;
+                        row[node] = r;
+                        up[node] = up[c];
+                        down[node] = c;
+                        down[up[c]] = node;
+                        up[c] = node;
+                        columnSize[c]++;
+                        left[node] = i == 0 ? node + columns.length - 1 : node - 1;
+                        right[node] = i == columns.length - 1 ? node - columns.length + 1 : node + 1;
+                        node++;
+                    }
+                }
+            }
+        }
+
+        SolveResult solve(int[] nodes, SolveLimits limits) {
+            Board.STANDARD.check(nodes);
+            final long startNanos = System.nanoTime();
+            this.limits = limits;
+            interruption = null;
+            rowsTried = 0;
+            backtracks = 0;
+            maxDepth = 0;
+            // Заданные вершины выбираются сразу. Если две заданные вершины претендуют на одну колонку - решения нет
+            int depth = 0;
+            int[] solution = null;
+            try {
+                boolean valid = true;
+                for (int cell = 0; cell < NUM_OF_NODES && valid; cell++) {
+                    if (nodes[cell] == 0) {
+                        continue;
+                    }
+                    final int start = rowStart[cell * NUM_OF_COLORS + nodes[cell] - 1];
+                    int node = start;
+                    do {
+                        if (covered[column[node]]) {
+                            valid = false;
+                        }
+                        node = right[node];
+                    } while (node != start && valid);
+                    if (valid) {
+                        node = start;
+                        do {
+                            cover(column[node]);
+                            node = right[node];
+                        } while (node != start);
+                        selected[depth++] = start;
+                    }
+                }
+
+                maxDepth = depth;
+                if (valid && search(depth)) {
+                    solution = new int[NUM_OF_NODES];
+                    for (int i = 0; i < NUM_OF_NODES; i++) {
+                        final int r = row[selected[i]];
+                        solution[r / NUM_OF_COLORS] = r % NUM_OF_COLORS + 1;
+                    }
+                }
+            } finally {
+                // Возвращаем матрицу в исходное состояние, даже если перебор прервался исключением
+                while (depth > 0) {
+                    final int start = selected[--depth];
+                    int node = left[start];
+                    do {
+                        uncover(column[node]);
+                        node = left[node];
+                    } while (node != left[start]);
+                }
+            }
+            final SolveResult.Status status = solution != null ? SolveResult.Status.SOLVED
+                    : interruption != null ? interruption : SolveResult.Status.NO_SOLUTION;
+            return new SolveResult(status, solution,
+                    new SolveStats(rowsTried, maxDepth, 0, backtracks, System.nanoTime() - startNanos));
+        }
+
+        /**
+         * Алгоритм X. Выбранные строки остаются в {@link #selected}, матрица восстанавливается и при успехе
+         */
+        private boolean search(int depth) {
+            maxDepth = Math.max(maxDepth, depth);
+            if (right[ROOT] == ROOT) {
+                return true;
+            }
+
+            // Колонка с наименьшим количеством строк
+            int best = right[ROOT];
+            for (int c = right[best]; c != ROOT && columnSize[best] > 1; c = right[c]) {
+                if (columnSize[c] < columnSize[best]) {
+                    best = c;
+                }
+            }
+            if (columnSize[best] == 0) {
+                return false;
+            }
+
+            cover(best);
+            boolean found = false;
+            for (int r = down[best]; r != best && !found && !interrupted(); r = down[r]) {
+                rowsTried++;
+                selected[depth] = r;
+                for (int node = right[r]; node != r; node = right[node]) {
+                    cover(column[node]);
+                }
+                found = search(depth + 1);
+                for (int node = left[r]; node != r; node = left[node]) {
+                    uncover(column[node]);
+                }
+                if (!found) {
+                    backtracks++;
+                }
+            }
+            uncover(best);
+            return found;
+        }
+
+        private boolean interrupted() {
+            if (interruption == null) {
+                if (rowsTried >= limits.combinationBudget()) {
+                    interruption = SolveResult.Status.BUDGET_EXCEEDED;
+                } else if (limits.isCancelled()) {
+                    interruption = SolveResult.Status.CANCELLED;
+                } else if ((rowsTried & (SearchState.DEADLINE_CHECK_INTERVAL - 1)) == 0 && limits.isExpired()) {
+                    interruption = SolveResult.Status.TIMED_OUT;
+                }
+            }
+            return interruption != null;
+        }
+
+        private void cover(int c) {
+            covered[c] = true;
+            right[left[c]] = right[c];
+            left[right[c]] = left[c];
+            for (int r = down[c]; r != c; r = down[r]) {
+                for (int node = right[r]; node != r; node = right[node]) {
+                    up[down[node]] = up[node];
+                    down[up[node]] = down[node];
+                    columnSize[column[node]]--;
+                }
+            }
+        }
+
+        private void uncover(int c) {
+            for (int r = up[c]; r != c; r = up[r]) {
+                for (int node = left[r]; node != r; node = left[node]) {
+                    columnSize[column[node]]++;
+                    down[up[node]] = node;
+                    up[down[node]] = node;
+                }
+            }
+            right[left[c]] = c;
+            left[right[c]] = c;
+            covered[c] = false;
+        }
+    }
+}
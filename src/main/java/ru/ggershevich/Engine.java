@@ -0,0 +1,60 @@
+package ru.ggershevich;
+
+/**
+ * Доступные алгоритмы решения
+ */
+public enum Engine {
+    /**
+     * Точный алгоритм раскрашивания, {@link ColoringSolver}
+     */
+    COLORING {
+        @Override
+        public Solver solver() {
+            return new ColoringSolver();
+        }
+    },
+    /**
+     * Наложение шаблонов, {@link TemplateSolver}
+     */
+    TEMPLATE {
+        @Override
+        public Solver solver() {
+            return new TemplateSolver();
+        }
+    },
+    /**
+     * Точное покрытие методом Dancing Links, {@link DlxSolver}
+     */
+    DLX {
+        @Override
+        public Solver solver() {
+            return new DlxSolver();
+        }
+    },
+    /**
+     * Несколько алгоритмов одновременно, ответ первого, {@link PortfolioSolver}
+     */
+    PORTFOLIO {
+        @Override
+        public Solver solver() {
+            return new PortfolioSolver();
+        }
+    };
+
+    /**
+     * @return новый экземпляр алгоритма с настройками по умолчанию
+     */
+    public abstract Solver solver();
+
+    /**
+     * @param name название алгоритма без учета регистра, например "dlx"
+     */
+    public static Engine of(String name) {
+        for (Engine engine : values()) {
+            if (engine.name().equalsIgnoreCase(name)) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException("Unknown engine " + name + ", expected one of coloring, template, dlx, portfolio");
+    }
+}
@@ -0,0 +1,123 @@
+package ru.ggershevich;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек с логарифмическими корзинами. Значения хранятся в микросекундах, до 64 мкс - точно,
+ * дальше с относительной погрешностью не больше 1/32. Запись потокобезопасна и не создает объектов.
+ */
+class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 64;
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BITS = 6;
+    private static final int BUCKETS = LINEAR_BUCKETS + (Long.SIZE - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos задержка в наносекундах
+     */
+    void record(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.max(nanos, 0));
+        counts.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long previous;
+        do {
+            previous = max.get();
+        } while (micros > previous && !max.compareAndSet(previous, micros));
+    }
+
+    long count() {
+        return count.get();
+    }
+
+    /**
+     * @return сумма задержек в микросекундах
+     */
+    long sum() {
+        return sum.get();
+    }
+
+    /**
+     * @return средняя задержка в микросекундах
+     */
+    double mean() {
+        long total = count.get();
+        return total == 0 ? 0 : (double) sum.get() / total;
+    }
+
+    /**
+     * @return максимальная задержка в микросекундах
+     */
+    long max() {
+        return max.get();
+    }
+
+    /**
+     * @param percentile процентиль от 0 до 100
+     * @return верхняя граница корзины, в которую попал процентиль, в микросекундах
+     */
+    long percentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return количество значений не больше micros (с точностью до корзины) - для кумулятивных гистограмм
+     */
+    long countAtMost(long micros) {
+        long result = 0;
+        for (int i = 0; i < BUCKETS && upperBound(i) <= micros; i++) {
+            result += counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return строка вида "p50=12us p90=40us p99=1200us p99.9=5300us max=9100us"
+     */
+    String summary() {
+        return "p50=" + percentile(50) + "us"
+                + " p90=" + percentile(90) + "us"
+                + " p99=" + percentile(99) + "us"
+                + " p99.9=" + percentile(99.9) + "us"
+                + " max=" + max() + "us";
+    }
+
+    private static int bucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lower = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -1,19 +1,300 @@
 package ru.ggershevich;
 
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 public class Main {
-    public static void main(String[] args) {
-        if (args == null || args[0] == null || args[0].isEmpty()) {
-            System.out.println("Give me example as argument. Example is sting of 81 character there unknown cells are 0, and known cells are 1-9:");
-            System.out.println("java -jar sudoku-solver 013800405024605000087000930490306000001000500000701093069000740000207680102008350");
+    public static void main(String[] args) throws IOException {
+        if (args == null || args.length == 0 || args[0] == null || args[0].isEmpty()) {
+            printUsage();
+            return;
+        }
+
+        if ("--batch".equals(args[0])) {
+            batch(args);
             return;
         }
 
-        final String solution = SudokuSolver.solve(args[0]);
-        if (solution == null) {
+        if ("--server".equals(args[0])) {
+            server(args);
+            return;
+        }
+
+        if ("--pack".equals(args[0])) {
+            pack(args);
+            return;
+        }
+
+        if ("--coordinate".equals(args[0])) {
+            coordinate(args);
+            return;
+        }
+
+        if ("--worker".equals(args[0])) {
+            final InetSocketAddress coordinator = args.length > 1 ? address(args[1]) : null;
+            if (coordinator == null) {
+                printUsage();
+                return;
+            }
+            DistributedSearch.Worker.run(coordinator.getHostString(), coordinator.getPort());
+            return;
+        }
+
+        if ("--unpack".equals(args[0]) && args.length > 1) {
+            final PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+            PackedFormat.unpack(Paths.get(args[1]), out);
+            return;
+        }
+
+        Engine engine = Engine.COLORING;
+        String example = args[0];
+        if ("--engine".equals(args[0]) && args.length > 2) {
+            engine = Engine.of(args[1]);
+            example = args[2];
+        }
+        // Примеры 16 x 16 и 25 x 25 решает только алгоритм раскрашивания
+        final Board board = Board.ofCells(example.length());
+        final Solver solver = board != null && board != Board.standard()
+                ? new ColoringSolver(SolverConfig.defaults().withBoard(board))
+                : engine.solver();
+        final String solution = solver.solve(example);
+        if (solution == null || solution.isEmpty()) {
             System.out.println("Solution not found");
         } else {
             System.out.println(solution);
         }
     }
+
+    /**
+     * Пакетный режим: java -jar sudoku-solver --batch [--threads N] [--unordered] [--engine E] [--cache N] [файл | -]
+     */
+    private static void batch(String[] args) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean ordered = true;
+        Engine engine = Engine.COLORING;
+        int cache = 0;
+        String file = "-";
+        for (int i = 1; i < args.length; i++) {
+            if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--unordered".equals(args[i])) {
+                ordered = false;
+            } else if ("--engine".equals(args[i]) && i + 1 < args.length) {
+                engine = Engine.of(args[++i]);
+            } else if ("--cache".equals(args[i]) && i + 1 < args.length) {
+                cache = Integer.parseInt(args[++i]);
+            } else {
+                file = args[i];
+            }
+        }
+
+        final BatchSolver batchSolver = new BatchSolver(threads, ordered, solver(engine, cache));
+        final PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        final long start = System.nanoTime();
+        if ("-".equals(file)) {
+            batchSolver.solve(System.in, out);
+        } else {
+            batchSolver.solve(Paths.get(file), out);
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        final LatencyHistogram latency = batchSolver.latency();
+        final double seconds = elapsed / (double) TimeUnit.SECONDS.toNanos(1);
+        System.err.printf("Solved %d puzzles in %.3f s, %.1f puzzles/sec%n",
+                latency.count(), seconds, seconds > 0 ? latency.count() / seconds : 0);
+        System.err.println("Latency: " + latency.summary());
+        if (batchSolver.failures() > 0) {
+            System.err.printf("Failed: %d puzzles (\"%s\" in the output)%n", batchSolver.failures(), BatchSolver.FAILED);
+        }
+        if (batchSolver.solver() instanceof CachingSolver) {
+            final CachingSolver caching = (CachingSolver) batchSolver.solver();
+            System.err.printf("Cache: %d hits, %d misses, %d evictions, %d bypassed%n",
+                    caching.hits(), caching.misses(), caching.evictions(), caching.bypassed());
+        }
+    }
+
+    /**
+     * @param cache размер кэша решений, 0 - без кэша
+     */
+    private static Solver solver(Engine engine, int cache) {
+        return cache > 0 ? new CachingSolver(engine.solver(), cache) : engine.solver();
+    }
+
+    /**
+     * Режим сервера: java -jar sudoku-solver --server [--port P] [--threads N] [--queue Q] [--deadline-ms D] [--engine E] [--cache N]
+     */
+    private static void server(String[] args) throws IOException {
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int queue = 1024;
+        long deadline = 1000;
+        Engine engine = Engine.COLORING;
+        int cache = 0;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--queue":
+                    queue = Integer.parseInt(args[i + 1]);
+                    break;
+                case "--deadline-ms":
+                    deadline = Long.parseLong(args[i + 1]);
+                    break;
+                case "--engine":
+                    engine = Engine.of(args[i + 1]);
+                    break;
+                case "--cache":
+                    cache = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        final SolverServer server = new SolverServer(new InetSocketAddress(port), threads, queue, deadline, solver(engine, cache));
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        System.err.println("Listening on port " + server.port());
+    }
+
+    /**
+     * Упаковка текстового архива: java -jar sudoku-solver --pack [--box B] [--solutions] текст архив
+     */
+    private static void pack(String[] args) throws IOException {
+        Board board = Board.standard();
+        boolean solutions = false;
+        final List<String> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if ("--box".equals(args[i]) && i + 1 < args.length) {
+                board = Board.of(Integer.parseInt(args[++i]));
+            } else if ("--solutions".equals(args[i])) {
+                solutions = true;
+            } else {
+                files.add(args[i]);
+            }
+        }
+        if (files.size() != 2) {
+            printUsage();
+            return;
+        }
+        final long count = PackedFormat.pack(Paths.get(files.get(0)), Paths.get(files.get(1)), board, solutions);
+        System.err.printf("Packed %d puzzles%n", count);
+    }
+
+    /**
+     * Распределенный подсчет решений:
+     * java -jar sudoku-solver --coordinate [--bind A] [--port P] [--spawn N] [--limit L] [--budget B] пример
+     */
+    private static void coordinate(String[] args) throws IOException {
+        InetAddress bind = InetAddress.getLoopbackAddress();
+        int port = 0;
+        int spawn = Runtime.getRuntime().availableProcessors();
+        long limit = Long.MAX_VALUE;
+        long budget = DistributedSearch.DEFAULT_UNIT_BUDGET;
+        String example = null;
+        for (int i = 1; i < args.length; i++) {
+            if ("--bind".equals(args[i]) && i + 1 < args.length) {
+                bind = InetAddress.getByName(args[++i]);
+            } else if ("--port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("--spawn".equals(args[i]) && i + 1 < args.length) {
+                spawn = Integer.parseInt(args[++i]);
+            } else if ("--limit".equals(args[i]) && i + 1 < args.length) {
+                limit = Long.parseLong(args[++i]);
+            } else if ("--budget".equals(args[i]) && i + 1 < args.length) {
+                budget = Long.parseLong(args[++i]);
+            } else {
+                example = args[i];
+            }
+        }
+        final Board board = example != null ? Board.ofCells(example.length()) : null;
+        if (board == null) {
+            printUsage();
+            return;
+        }
+
+        final List<Process> workers = new ArrayList<>();
+        final long start = System.nanoTime();
+        final DistributedSearch.Result result;
+        try (DistributedSearch.Coordinator coordinator =
+                     new DistributedSearch.Coordinator(SolverConfig.defaults().withBoard(board), bind, port, budget)) {
+            System.err.println("Coordinating on " + bind.getHostAddress() + ":" + coordinator.port());
+            for (int i = 0; i < spawn; i++) {
+                workers.add(DistributedSearch.startWorker(coordinator.port()));
+            }
+            result = coordinator.count(board.parse(example), limit, Math.max(1, 4 * Math.max(spawn, 1)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (Process worker : workers) {
+            try {
+                worker.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        System.out.println("Solutions: " + result.count());
+        if (result.solution() != null) {
+            System.out.println(board.toString(result.solution()));
+        }
+        System.err.printf("%d units, %d splits in %.3f s%n", result.units(), result.splits(),
+                elapsed / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * @param value адрес в виде host:port
+     * @return адрес без разрешения имени или null, если строка не host:port с портом 1-65535
+     */
+    private static InetSocketAddress address(String value) {
+        final int colon = value.lastIndexOf(':');
+        if (colon <= 0 || colon == value.length() - 1) {
+            return null;
+        }
+        final int port;
+        try {
+            port = Integer.parseInt(value.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (port < 1 || port > 65535) {
+            return null;
+        }
+        return InetSocketAddress.createUnresolved(value.substring(0, colon), port);
+    }
+
+    private static void printUsage() {
+        System.out.println("Give me example as argument. Example is sting of 81 character there unknown cells are 0, and known cells are 1-9:");
+        System.out.println("java -jar sudoku-solver 013800405024605000087000930490306000001000500000701093069000740000207680102008350");
+        System.out.println("16x16 and 25x25 examples use 1-9 and letters A-P for colors 10-25, 0 or . for unknown cells.");
+        System.out.println("Or solve many examples, one per line, from file or standard input:");
+        System.out.println("java -jar sudoku-solver --batch [--threads N] [--unordered] [--engine E] [--cache N] [file | -]");
+        System.out.println("Or run HTTP server with POST /solve, POST /batch and GET /metrics:");
+        System.out.println("java -jar sudoku-solver --server [--port P] [--threads N] [--queue Q] [--deadline-ms D] [--engine E] [--cache N]");
+        System.out.println("Cache N keeps solutions of N puzzles, equivalent puzzles (relabelled, permuted, transposed) share an entry.");
+        System.out.println("Batch mode also reads packed archives. Pack text lines (puzzle, optionally followed by solution) or print archive back:");
+        System.out.println("java -jar sudoku-solver --pack [--box B] [--solutions] text-file packed-file");
+        System.out.println("java -jar sudoku-solver --unpack packed-file");
+        System.out.println("Or count solutions on several worker processes (N local workers are spawned; the coordinator listens on");
+        System.out.println("localhost unless --bind gives another address, then workers on other machines may join with --worker):");
+        System.out.println("java -jar sudoku-solver --coordinate [--bind A] [--port P] [--spawn N] [--limit L] [--budget B] example");
+        System.out.println("java -jar sudoku-solver --worker host:port");
+        System.out.println("Engine E is one of coloring (default), template, dlx, portfolio (several engines racing, first answer wins):");
+        System.out.println("java -jar sudoku-solver --engine dlx 013800405024605000087000930490306000001000500000701093069000740000207680102008350");
+    }
 }
@@ -0,0 +1,125 @@
+package ru.ggershevich;
+
+import java.util.SplittableRandom;
+
+/**
+ * Таблица тупиков (nogoods): состояния перебора, для которых уже известно, что решения нет.
+ * <p>
+ * Состояние задается масками доступных цветов неокрашенных вершин: оставшаяся задача - окрасить эти вершины
+ * доступными цветами без повторов в строке, колонке и квадрате, окрашенные вершины на нее уже не влияют.
+ * Поэтому одна и та же оставшаяся задача получается из разных окрасок, например при обмене двух цветов
+ * в углах прямоугольника, и, если она однажды оказалась тупиком, повторный перебор не нужен.
+ * Это верно и для разных примеров одного поля, поэтому таблица не очищается между решениями.
+ * <p>
+ * Ключ - хеш Зобриста: XOR случайных чисел для каждой пары (вершина, доступный цвет). Считается два независимых
+ * хеша: первый выбирает ячейку таблицы, второй хранится в ней для проверки, так что ложное совпадение практически
+ * невозможно. Перебор не пересчитывает хеши в каждом узле, а обновляет их при изменении масок через
+ * {@link #indexKey(int, int)} и {@link #checkKey(int, int)}.
+ * Таблица фиксированного размера, новая запись вытесняет прежнюю в той же ячейке.
+ */
+final class NogoodTable {
+    /**
+     * Фиксированное начальное значение: одинаковые ключи во всех запусках
+     */
+    private static final long SEED = 0x5EED_50D0_C0DEL;
+
+    private final int size;
+    private final long[] indexKeys;
+    private final long[] checkKeys;
+    private final long[] entries;
+    private final int mask;
+    /**
+     * Второй хеш последнего вызова {@link #hash(int[])}
+     */
+    private long check;
+
+    /**
+     * @param capacity количество записей, округляется вверх до степени двойки
+     */
+    NogoodTable(Board board, int capacity) {
+        if (capacity < 1 || capacity > SolverConfig.MAX_NOGOOD_ENTRIES) {
+            throw new IllegalArgumentException("Nogood table capacity must be between 1 and "
+                    + SolverConfig.MAX_NOGOOD_ENTRIES);
+        }
+        this.size = board.size;
+        final SplittableRandom random = new SplittableRandom(SEED);
+        indexKeys = new long[board.cells * size];
+        checkKeys = new long[board.cells * size];
+        for (int i = 0; i < indexKeys.length; i++) {
+            indexKeys[i] = random.nextLong();
+            checkKeys[i] = random.nextLong();
+        }
+        final int length = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        entries = new long[length];
+        mask = length - 1;
+    }
+
+    /**
+     * @param candidates маски доступных цветов вершин, 0 у окрашенных
+     * @return первый хеш состояния, второй - {@link #check()}
+     */
+    long hash(int[] candidates) {
+        long index = 0;
+        long check = 0;
+        for (int node = 0; node < candidates.length; node++) {
+            int colors = candidates[node];
+            final int offset = node * size;
+            while (colors != 0) {
+                final int key = offset + Integer.numberOfTrailingZeros(colors);
+                index ^= indexKeys[key];
+                check ^= checkKeys[key];
+                colors &= colors - 1;
+            }
+        }
+        this.check = check;
+        return index;
+    }
+
+    long check() {
+        return check;
+    }
+
+    /**
+     * @return XOR ключей первого хеша для цветов colors вершины node: изменение хеша при добавлении или
+     * удалении этих цветов из маски
+     */
+    long indexKey(int node, int colors) {
+        return keys(indexKeys, node, colors);
+    }
+
+    /**
+     * То же для второго хеша
+     */
+    long checkKey(int node, int colors) {
+        return keys(checkKeys, node, colors);
+    }
+
+    private long keys(long[] keys, int node, int colors) {
+        final int offset = node * size;
+        long result = 0;
+        while (colors != 0) {
+            result ^= keys[offset + Integer.numberOfTrailingZeros(colors)];
+            colors &= colors - 1;
+        }
+        return result;
+    }
+
+    boolean contains(long index, long check) {
+        return entries[(int) index & mask] == nonZero(check);
+    }
+
+    void add(long index, long check) {
+        entries[(int) index & mask] = nonZero(check);
+    }
+
+    /**
+     * 0 обозначает пустую ячейку
+     */
+    private static long nonZero(long check) {
+        return check != 0 ? check : 1;
+    }
+
+    int capacity() {
+        return entries.length;
+    }
+}
@@ -0,0 +1,417 @@
+package ru.ggershevich;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Упакованный двоичный формат архива примеров.
+ * <p>
+ * Заголовок {@value #HEADER_SIZE} байт: сигнатура "SUDP", версия, размер квадрата поля, флаги (бит 0 - есть решения),
+ * бит на вершину, количество записей (long). Дальше записи фиксированного размера: блок примера и, если есть
+ * решения, блок решения. В блоке цвета вершин упакованы подряд, старшими битами вперед, по 4 бита на вершину
+ * для поля 9 x 9 (41 байт вместо 82 байт строки) и по 5 бит для 16 x 16 и 25 x 25. Блок решения примера
+ * без решения заполнен нулями.
+ * <p>
+ * Записи фиксированного размера, поэтому запись с номером i находится по смещению и архив можно делить
+ * между потоками или процессами без чтения предыдущих записей.
+ */
+public final class PackedFormat {
+    static final int HEADER_SIZE = 16;
+    private static final int MAGIC = 'S' << 24 | 'U' << 16 | 'D' << 8 | 'P';
+    private static final int VERSION = 1;
+    private static final int FLAG_SOLUTIONS = 1;
+    private static final int COUNT_OFFSET = 8;
+
+    private PackedFormat() {
+    }
+
+    /**
+     * @return количество бит на вершину: столько, чтобы поместились цвета 0..size
+     */
+    static int bitsPerCell(Board board) {
+        return 32 - Integer.numberOfLeadingZeros(board.size);
+    }
+
+    /**
+     * @return размер блока примера или решения в байтах
+     */
+    static int blockSize(Board board) {
+        return (board.cells * bitsPerCell(board) + 7) / 8;
+    }
+
+    /**
+     * @return true, если файл начинается с заголовка упакованного формата
+     */
+    public static boolean isPacked(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // читаем, пока не прочитаем 4 байта или файл не закончится
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Упаковывает цвета вершин в блок, начиная с позиции buffer.position()
+     */
+    static void encode(int[] nodes, int bits, ByteBuffer buffer) {
+        int accumulator = 0;
+        int accumulated = 0;
+        for (int color : nodes) {
+            accumulator = accumulator << bits | color;
+            accumulated += bits;
+            while (accumulated >= 8) {
+                accumulated -= 8;
+                buffer.put((byte) (accumulator >>> accumulated));
+            }
+        }
+        if (accumulated > 0) {
+            buffer.put((byte) (accumulator << (8 - accumulated)));
+        }
+    }
+
+    /**
+     * Распаковывает блок с абсолютной позиции offset прямо в массив окраски вершин
+     * @param maxColor наибольший допустимый цвет
+     * @return false, если в блоке есть цвет больше maxColor (поврежденный архив)
+     */
+    static boolean decode(ByteBuffer buffer, int offset, int bits, int maxColor, int[] nodes) {
+        final int mask = (1 << bits) - 1;
+        int accumulator = 0;
+        int accumulated = 0;
+        int position = offset;
+        int max = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (accumulated < bits) {
+                accumulator = accumulator << 8 | buffer.get(position++) & 0xFF;
+                accumulated += 8;
+            }
+            accumulated -= bits;
+            final int color = accumulator >>> accumulated & mask;
+            nodes[i] = color;
+            max = Math.max(max, color);
+        }
+        return max <= maxColor;
+    }
+
+    /**
+     * Чтение архива через отображение в память. Файл отображается областями по целому числу записей,
+     * записи распаковываются прямо в массивы вызывающего кода, без промежуточных строк и объектов
+     */
+    public static final class Reader implements Closeable {
+        private static final long REGION = 64L << 20;
+        static final int END = -1;
+        static final int CORRUPTED = 0;
+        static final int RECORD = 1;
+
+        private final FileChannel channel;
+        private final Board board;
+        private final boolean solutions;
+        private final long count;
+        private final int bits;
+        private final int blockSize;
+        private final int recordSize;
+        private final long recordsPerRegion;
+
+        private MappedByteBuffer region;
+        private long regionFirst;
+        private long regionRecords;
+        private long next;
+
+        public Reader(Path file) throws IOException {
+            this(file, REGION);
+        }
+
+        Reader(Path file, long regionBytes) throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                while (header.hasRemaining() && channel.read(header) >= 0) {
+                    // заголовок короче буфера только у поврежденного файла
+                }
+                if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                    throw new IOException("Not a packed puzzle file: " + file);
+                }
+                if (header.get(4) != VERSION) {
+                    throw new IOException("Unsupported packed format version " + header.get(4));
+                }
+                board = Board.of(header.get(5));
+                solutions = (header.get(6) & FLAG_SOLUTIONS) != 0;
+                bits = header.get(7);
+                if (bits != bitsPerCell(board)) {
+                    throw new IOException("Unexpected " + bits + " bits per cell for " + board);
+                }
+                count = header.getLong(COUNT_OFFSET);
+                blockSize = blockSize(board);
+                recordSize = solutions ? 2 * blockSize : blockSize;
+                if (channel.size() < HEADER_SIZE + count * recordSize) {
+                    throw new IOException("Packed file is truncated: " + file);
+                }
+                recordsPerRegion = Math.max(1, regionBytes / recordSize);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        public Board board() {
+            return board;
+        }
+
+        public boolean hasSolutions() {
+            return solutions;
+        }
+
+        /**
+         * @return количество записей в архиве
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * @return номер записи, которую вернет следующий {@link #next(int[])}
+         */
+        public long position() {
+            return next;
+        }
+
+        /**
+         * Переходит к записи с номером record, например к началу своей части архива
+         */
+        public void seek(long record) {
+            if (record < 0 || record > count) {
+                throw new IllegalArgumentException("Record " + record + " is out of 0.." + count);
+            }
+            next = record;
+        }
+
+        /**
+         * @param nodes массив из {@link Board#cells()} элементов, в него распаковывается пример
+         * @return false, если записи закончились
+         * @throws IOException если запись повреждена, следующий вызов вернет следующую запись
+         */
+        public boolean next(int[] nodes) throws IOException {
+            return next(nodes, null);
+        }
+
+        /**
+         * @param solution массив для решения или null. Если в архиве нет решений или у примера нет решения,
+         *                 массив заполняется нулями
+         */
+        public boolean next(int[] nodes, int[] solution) throws IOException {
+            final int result = read(nodes, solution);
+            if (result == CORRUPTED) {
+                throw new IOException("Corrupted record " + (next - 1));
+            }
+            return result == RECORD;
+        }
+
+        /**
+         * Как {@link #next(int[], int[])}, но поврежденная запись не прерывает чтение: она пропускается
+         * с результатом {@link #CORRUPTED}
+         * @return {@link #RECORD}, {@link #CORRUPTED} или {@link #END}
+         */
+        int read(int[] nodes, int[] solution) throws IOException {
+            if (next >= count) {
+                return END;
+            }
+            if (region == null || next < regionFirst || next >= regionFirst + regionRecords) {
+                map(next);
+            }
+            final int offset = (int) ((next - regionFirst) * recordSize);
+            next++;
+            if (!decode(region, offset, bits, board.size, nodes)) {
+                return CORRUPTED;
+            }
+            if (solution != null) {
+                if (!solutions) {
+                    Arrays.fill(solution, 0);
+                } else if (!decode(region, offset + blockSize, bits, board.size, solution)) {
+                    return CORRUPTED;
+                }
+            }
+            return RECORD;
+        }
+
+        private void map(long first) throws IOException {
+            regionFirst = first;
+            regionRecords = Math.min(recordsPerRegion, count - first);
+            region = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * recordSize,
+                    regionRecords * recordSize);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Запись архива. Записи копятся в буфере и пишутся в канал блоками, количество записей
+     * в заголовке обновляется при закрытии
+     */
+    public static final class Writer implements Closeable {
+        private static final int BUFFER_SIZE = 1 << 16;
+
+        private final FileChannel channel;
+        private final Board board;
+        private final boolean solutions;
+        private final int bits;
+        private final int blockSize;
+        private final ByteBuffer buffer;
+        private final int[] empty;
+        private long count;
+
+        /**
+         * @param solutions true, если у каждой записи есть блок решения
+         */
+        public Writer(Path file, Board board, boolean solutions) throws IOException {
+            this.board = board;
+            this.solutions = solutions;
+            this.bits = bitsPerCell(board);
+            this.blockSize = blockSize(board);
+            this.buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, 2 * blockSize));
+            this.empty = new int[board.cells];
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.write(header());
+        }
+
+        private ByteBuffer header() {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC)
+                    .put((byte) VERSION)
+                    .put((byte) board.boxSize())
+                    .put((byte) (solutions ? FLAG_SOLUTIONS : 0))
+                    .put((byte) bits)
+                    .putLong(count);
+            header.flip();
+            return header;
+        }
+
+        public void write(int[] nodes) throws IOException {
+            write(nodes, null);
+        }
+
+        /**
+         * @param solution решение или null, если решения нет. Игнорируется, если архив без решений
+         */
+        public void write(int[] nodes, int[] solution) throws IOException {
+            check(nodes);
+            if (solution != null) {
+                check(solution);
+            }
+            if (buffer.remaining() < 2 * blockSize) {
+                flush();
+            }
+            encode(nodes, bits, buffer);
+            if (solutions) {
+                encode(solution != null ? solution : empty, bits, buffer);
+            }
+            count++;
+        }
+
+        private void check(int[] nodes) {
+            if (nodes.length != board.cells) {
+                throw new IllegalArgumentException("Example must have " + board.cells + " nodes");
+            }
+            for (int color : nodes) {
+                if (color < 0 || color > board.size) {
+                    throw new IllegalArgumentException("Color " + color + " is out of 0.." + board.size);
+                }
+            }
+        }
+
+        public long count() {
+            return count;
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                final ByteBuffer header = header();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Переводит текстовый архив в упакованный. Строка - пример в формате {@link Board#parse(String)},
+     * за ним через пробел, запятую, двоеточие или табуляцию может идти решение. Пустые строки пропускаются
+     * @param solutions записывать ли блоки решений
+     * @return количество записанных примеров
+     */
+    public static long pack(Path text, Path packed, Board board, boolean solutions) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(text, StandardCharsets.US_ASCII);
+             Writer writer = new Writer(packed, board, solutions)) {
+            String line;
+            long number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    final int[] nodes = board.parse(line.substring(0, Math.min(line.length(), board.cells)));
+                    int[] solution = null;
+                    if (line.length() > board.cells) {
+                        if (":,; \t".indexOf(line.charAt(board.cells)) < 0) {
+                            throw new IllegalArgumentException("Unexpected separator '" + line.charAt(board.cells) + "'");
+                        }
+                        solution = board.parse(line.substring(board.cells + 1).trim());
+                    }
+                    writer.write(nodes, solution);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Line " + number + ": " + e.getMessage(), e);
+                }
+            }
+            return writer.count();
+        }
+    }
+
+    /**
+     * Печатает упакованный архив в текстовом виде: по примеру в строке, через пробел - решение, если оно есть
+     */
+    public static void unpack(Path packed, PrintStream out) throws IOException {
+        try (Reader reader = new Reader(packed)) {
+            final Board board = reader.board();
+            final int[] nodes = new int[board.cells];
+            final int[] solution = new int[board.cells];
+            while (reader.next(nodes, solution)) {
+                out.print(board.toString(nodes));
+                if (reader.hasSolutions() && solution[0] != 0) {
+                    out.print(' ');
+                    out.print(board.toString(solution));
+                }
+                out.println();
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.ggershevich;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Параллельный вариант алгоритма {@link SudokuSolver#solve(int[])}.
+ * <p>
+ * На первых {@link #SPLIT_DEPTH} уровнях рекурсии каждая комбинация выбранного цвета (или цвет выбранной вершины)
+ * перебирается отдельной задачей ForkJoin на копии состояния, поэтому простаивающие потоки пула забирают себе
+ * часть перебора (work stealing). Глубже перебор идет последовательно.
+ * <p>
+ * Найденные решения учитываются общим {@link SolutionCounter}. Как только найдено достаточно решений
+ * (для поиска решения - одно), остальные задачи прекращают перебор.
+ */
+class ParallelSearch extends RecursiveTask<int[]> {
+    private static final long serialVersionUID = 1L;
+    /**
+     * Количество уровней рекурсии, на которых перебор разбивается на задачи
+     */
+    static final int SPLIT_DEPTH = 2;
+    /**
+     * Сколько веток одного ветвления одновременно отдано пулу, на поток
+     */
+    private static final int WINDOW_PER_THREAD = 4;
+
+    private final SearchState state;
+    private final int depth;
+    private final SolutionCounter counter;
+    /**
+     * Накопительные счетчики исключенных кандидатов решателя, см. {@link ColoringSolver#eliminations}
+     */
+    private final LongAdder[] eliminations;
+
+    /**
+     * Поиск первого решения
+     */
+    ParallelSearch(SolverConfig config, int[] nodes, LongAdder[] eliminations) {
+        this(config, nodes, new SolutionCounter(1), eliminations);
+    }
+
+    /**
+     * Поиск решений, пока счетчик не наберет достаточно
+     */
+    ParallelSearch(SolverConfig config, int[] nodes, SolutionCounter counter, LongAdder[] eliminations) {
+        this(new SearchState(config.board(), nodes, config.propagation(), config.branching()), 0, counter, eliminations);
+    }
+
+    private ParallelSearch(SearchState state, int depth, SolutionCounter counter, LongAdder[] eliminations) {
+        this.state = state;
+        this.depth = depth;
+        this.counter = counter;
+        this.eliminations = eliminations;
+    }
+
+    /**
+     * @return первое найденное решение или null
+     */
+    @Override
+    protected int[] compute() {
+        search();
+        return counter.first();
+    }
+
+    private void search() {
+        if (counter.isDone()) {
+            return;
+        }
+
+        if (depth >= SPLIT_DEPTH) {
+            state.count(depth, counter);
+            state.flushEliminations(eliminations);
+            return;
+        }
+
+        final int mark = state.mark();
+        final SearchState.Step step = state.branch(depth);
+        state.flushEliminations(eliminations);
+        if (step == SearchState.Step.DEAD) {
+            return;
+        }
+        if (step == SearchState.Step.SOLVED) {
+            counter.found(state);
+            return;
+        }
+
+        // Комбинации перебираются по одной: возвращенная комбинация уже окрашена в состоянии, ветка перебирается
+        // на его копии. В работе не больше WINDOW_PER_THREAD веток на поток пула, поэтому даже на пустом поле,
+        // где комбинаций первого цвета десятки тысяч, копии состояния не накапливаются
+        // Задачу может выполнить и вызвавший поток вне пула
+        final ForkJoinPool pool = getPool();
+        final int window = WINDOW_PER_THREAD
+                * (pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism());
+        final Deque<ParallelSearch> branches = new ArrayDeque<>();
+        boolean first = true;
+        while (!counter.isDone() && state.nextCombination(depth, first)) {
+            first = false;
+            final ParallelSearch branch = new ParallelSearch(state.copy(), depth + 1, counter, eliminations);
+            branch.fork();
+            branches.add(branch);
+            if (branches.size() >= window) {
+                branches.poll().join();
+            }
+        }
+        // Прерванный перебор оставляет окрашенной последнюю комбинацию
+        state.undo(mark);
+        while (!branches.isEmpty()) {
+            branches.poll().join();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package ru.ggershevich;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Портфель алгоритмов: пример одновременно решают несколько разных алгоритмов в отдельных потоках,
+ * возвращается первый окончательный ответ (решение или его отсутствие), остальные прерываются флагом
+ * {@link SolveLimits#withCancellation}.
+ * <p>
+ * Время перебора одного алгоритма сильно зависит от того, какой цвет или вершина выбраны первыми: на одном примере
+ * перебор занимает миллисекунды, на похожем - секунды. У разных порядков перебора медленные примеры разные,
+ * поэтому время портфеля близко к лучшему из алгоритмов, а не к худшему.
+ * <p>
+ * Портфель по умолчанию ({@link #PortfolioSolver(Board)}): раскрашивание с адаптивным ветвлением, только по цвету,
+ * адаптивное с обратной нумерацией цветов (другой порядок выбора из равных цветов и перебора цветов вершины)
+ * и, для поля 9 x 9, {@link DlxSolver}.
+ * <p>
+ * Потоки создаются по мере надобности и завершаются после простоя, поэтому экземпляр не нужно закрывать.
+ * Одновременные решения из разных потоков получают свои потоки алгоритмов, но всего потоков не больше
+ * количества ядер, умноженного на количество алгоритмов. Алгоритм, которому не хватило потока, выполняется
+ * в вызывающем потоке после запуска остальных и прерывается ответом любого из них.
+ * <p>
+ * Исключение одного алгоритма не прерывает гонку: оно учитывается в {@link #failures()}, ответ ждется от остальных.
+ * Исключение пробрасывается, только если ответа не дал ни один алгоритм.
+ */
+public class PortfolioSolver implements Solver {
+    /**
+     * Как часто проверяется флаг прерывания вызывающего, пока алгоритмы работают
+     */
+    private static final long CANCELLATION_POLL_MILLIS = 5;
+    private static final long IDLE_SECONDS = 30;
+    private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+    private final Board board;
+    private final List<Solver> engines;
+    private final LongAdder[] wins;
+    private final LongAdder failures = new LongAdder();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Портфель по умолчанию для поля 9 x 9
+     */
+    public PortfolioSolver() {
+        this(Board.standard());
+    }
+
+    /**
+     * Портфель по умолчанию для поля board
+     */
+    public PortfolioSolver(Board board) {
+        this(board, defaultEngines(board));
+    }
+
+    /**
+     * @param engines алгоритмы для поля board, не меньше одного. Каждый должен проверять флаг прерывания
+     * в {@link Solver#solve(int[], SolveLimits)}, иначе проигравший алгоритм доработает до конца
+     */
+    public PortfolioSolver(Board board, List<? extends Solver> engines) {
+        this(board, engines, Runtime.getRuntime().availableProcessors() * (engines != null ? engines.size() : 1));
+    }
+
+    /**
+     * @param threads наибольшее количество потоков алгоритмов
+     */
+    PortfolioSolver(Board board, List<? extends Solver> engines, int threads) {
+        if (board == null) {
+            throw new IllegalArgumentException("Board must not be null");
+        }
+        if (engines == null || engines.isEmpty() || engines.contains(null)) {
+            throw new IllegalArgumentException("Portfolio must contain at least one solver");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        this.board = board;
+        this.engines = Collections.unmodifiableList(new ArrayList<>(engines));
+        this.wins = new LongAdder[engines.size()];
+        for (int i = 0; i < wins.length; i++) {
+            wins[i] = new LongAdder();
+        }
+        final String prefix = "portfolio-" + POOL_NUMBER.incrementAndGet() + "-";
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(0, threads, IDLE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    final Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private static List<Solver> defaultEngines(Board board) {
+        final SolverConfig config = SolverConfig.defaults().withBoard(board);
+        final List<Solver> engines = new ArrayList<>(Arrays.asList(
+                new ColoringSolver(config),
+                new ColoringSolver(config.withBranching(SolverConfig.Branching.COLOR)),
+                new Relabeled(new ColoringSolver(config), board.size())));
+        if (board == Board.standard()) {
+            engines.add(new DlxSolver());
+        }
+        return engines;
+    }
+
+    public List<Solver> engines() {
+        return engines;
+    }
+
+    /**
+     * @return сколько раз алгоритм engines().get(index) ответил первым
+     */
+    public long wins(int index) {
+        return wins[index].sum();
+    }
+
+    /**
+     * @return сколько раз алгоритм бросил исключение
+     */
+    public long failures() {
+        return failures.sum();
+    }
+
+    @Override
+    public int[] solve(int[] nodes) {
+        return solve(nodes, SolveLimits.none()).solution();
+    }
+
+    @Override
+    public int[] solve(int[] nodes, AtomicBoolean cancelled) {
+        final SolveLimits limits = cancelled != null ? SolveLimits.none().withCancellation(cancelled) : SolveLimits.none();
+        return solve(nodes, limits).solution();
+    }
+
+    /**
+     * @param example строка из {@link Board#cells()} символов в формате {@link Board#parse(String)}
+     * @return решение в том же виде или пустая строка, если решения нет
+     */
+    @Override
+    public String solve(String example) {
+        return board.toString(solve(board.parse(example)));
+    }
+
+    /**
+     * Срок и бюджет комбинаций действуют на каждый алгоритм отдельно. Если ни один алгоритм не дал окончательного
+     * ответа, возвращается результат последнего из прерванных. Статистика - алгоритма, ответившего первым
+     */
+    @Override
+    public SolveResult solve(int[] nodes, SolveLimits limits) {
+        if (nodes.length != board.cells()) {
+            throw new IllegalArgumentException("Example must have " + board.cells() + " nodes");
+        }
+        final AtomicBoolean race = new AtomicBoolean();
+        final SolveLimits engineLimits = limits.withAdditionalCancellation(race);
+        // Задачи, которым не хватило потока, выполняются здесь после запуска остальных
+        final List<Runnable> inline = new ArrayList<>();
+        final CompletionService<SolveResult> completion = new ExecutorCompletionService<>(task -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                inline.add(task);
+            }
+        });
+        final List<Future<SolveResult>> futures = new ArrayList<>(engines.size());
+        for (Solver engine : engines) {
+            futures.add(completion.submit(() -> {
+                final SolveResult result = engine.solve(nodes, engineLimits);
+                if (!result.status().isInterrupted()) {
+                    // Алгоритм в вызывающем потоке не ждет, пока вызывающий поток освободится
+                    race.set(true);
+                }
+                return result;
+            }));
+        }
+        for (Runnable task : inline) {
+            task.run();
+        }
+
+        SolveResult last = null;
+        Throwable failure = null;
+        try {
+            for (int done = 0; done < futures.size(); done++) {
+                final Future<SolveResult> future = next(completion, limits, race);
+                final SolveResult result;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    failures.increment();
+                    failure = e.getCause();
+                    continue;
+                }
+                if (!result.status().isInterrupted()) {
+                    wins[futures.indexOf(future)].increment();
+                    return result;
+                }
+                last = result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new SolveResult(SolveResult.Status.CANCELLED, null,
+                    last != null ? last.stats() : new SolveStats(0, 0, 0, 0, 0));
+        } finally {
+            // Проигравшие алгоритмы прекращают перебор перед следующей комбинацией
+            race.set(true);
+        }
+        if (last == null) {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            throw new IllegalStateException("Solver failed", failure);
+        }
+        return limits.isCancelled() ? new SolveResult(SolveResult.Status.CANCELLED, null, last.stats()) : last;
+    }
+
+    /**
+     * Ждет следующий завершившийся алгоритм. Флаг прерывания вызывающего передается алгоритмам через общий флаг
+     */
+    private static Future<SolveResult> next(CompletionService<SolveResult> completion, SolveLimits limits,
+                                            AtomicBoolean race) throws InterruptedException {
+        if (limits.cancellation() == null) {
+            return completion.take();
+        }
+        Future<SolveResult> future;
+        while ((future = completion.poll(CANCELLATION_POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            if (limits.isCancelled()) {
+                race.set(true);
+            }
+        }
+        return future;
+    }
+
+    @Override
+    public String toString() {
+        return "PortfolioSolver{" + engines + '}';
+    }
+
+    /**
+     * Алгоритм, которому пример передается с перенумерованными цветами c -> size + 1 - c. Меняет порядок выбора
+     * из равных по частоте цветов и порядок перебора цветов вершины, решение переводится обратно
+     */
+    static final class Relabeled implements Solver {
+        private final Solver solver;
+        private final int size;
+
+        Relabeled(Solver solver, int size) {
+            this.solver = solver;
+            this.size = size;
+        }
+
+        @Override
+        public int[] solve(int[] nodes) {
+            return solve(nodes, SolveLimits.none()).solution();
+        }
+
+        @Override
+        public SolveResult solve(int[] nodes, SolveLimits limits) {
+            final SolveResult result = solver.solve(relabel(nodes), limits);
+            return result.solution() == null ? result
+                    : new SolveResult(result.status(), relabel(result.solution()), result.stats());
+        }
+
+        private int[] relabel(int[] nodes) {
+            final int[] result = new int[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                result[i] = nodes[i] == 0 ? 0 : size + 1 - nodes[i];
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "Relabeled{" + solver + '}';
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package ru.ggershevich;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Набор техник исключения кандидатов, которые применяются перед каждым ветвлением перебора.
+ * Техники применяются по кругу, пока хотя бы одна из них что-то исключает.
+ * <p>
+ * Набор неизменяем. Количество исключенных каждой техникой кандидатов - в {@link SolveStats#eliminations}
+ * одного решения и накопительно в {@link ColoringSolver#eliminations}.
+ * <p>
+ * Описание техник: <a href="https://www.sudokuwiki.org/">sudokuwiki.org</a>
+ */
+public final class Propagation {
+
+    public enum Technique {
+        /**
+         * У вершины остался единственный доступный цвет
+         */
+        NAKED_SINGLES {
+            @Override
+            int apply(SearchState state) {
+                // Применяется сразу при окраске вершин, см. SearchState
+                return 0;
+            }
+        },
+        /**
+         * Цвет доступен единственной вершине строки, колонки или квадрата
+         */
+        HIDDEN_SINGLES {
+            @Override
+            int apply(SearchState state) {
+                int eliminated = 0;
+                final Board board = state.board();
+                for (int[] unit : board.units) {
+                    int once = 0;
+                    int twice = 0;
+                    int colored = 0;
+                    for (int node : unit) {
+                        final int colors = state.candidates(node);
+                        twice |= once & colors;
+                        once |= colors;
+                        colored |= Board.colorBit(state.colorOf(node));
+                    }
+                    // Цвет, который некуда поставить
+                    if ((once | colored) != board.allColors) {
+                        return CONTRADICTION;
+                    }
+                    int hidden = once & ~twice;
+                    while (hidden != 0) {
+                        final int colorBit = hidden & -hidden;
+                        hidden &= hidden - 1;
+                        for (int node : unit) {
+                            final int colors = state.candidates(node);
+                            if ((colors & colorBit) != 0) {
+                                eliminated++;
+                                if (!state.place(node, Integer.numberOfTrailingZeros(colorBit) + 1)) {
+                                    return CONTRADICTION;
+                                }
+                                break;
+                            }
+                        }
+                    }
+                }
+                return eliminated;
+            }
+        },
+        /**
+         * Цвет в квадрате доступен только в одной строке или колонке - исключаем его из остальной строки
+         * или колонки (pointing). Цвет в строке или колонке доступен только в одном квадрате - исключаем
+         * его из остального квадрата (claiming)
+         */
+        LOCKED_CANDIDATES {
+            @Override
+            int apply(SearchState state) {
+                int eliminated = 0;
+                final Board board = state.board();
+                for (int segment = 0; segment < board.segments.length; segment++) {
+                    final int inSegment = union(state, board.segments[segment]);
+                    final int restOfBox = union(state, board.segmentBoxRest[segment]);
+                    final int restOfLine = union(state, board.segmentLineRest[segment]);
+
+                    final int pointing = inSegment & ~restOfBox & restOfLine;
+                    if (pointing != 0) {
+                        final int count = eliminate(state, board.segmentLineRest[segment], pointing);
+                        if (count < 0) {
+                            return CONTRADICTION;
+                        }
+                        eliminated += count;
+                    }
+                    final int claiming = inSegment & ~restOfLine & restOfBox;
+                    if (claiming != 0) {
+                        final int count = eliminate(state, board.segmentBoxRest[segment], claiming);
+                        if (count < 0) {
+                            return CONTRADICTION;
+                        }
+                        eliminated += count;
+                    }
+                }
+                return eliminated;
+            }
+        },
+        /**
+         * Две вершины строки, колонки или квадрата с одними и теми же двумя доступными цветами -
+         * эти цвета исключаются из остальных вершин
+         */
+        NAKED_PAIRS {
+            @Override
+            int apply(SearchState state) {
+                int eliminated = 0;
+                for (int[] unit : state.board().units) {
+                    for (int i = 0; i < unit.length; i++) {
+                        final int pair = state.candidates(unit[i]);
+                        if (Integer.bitCount(pair) != 2) {
+                            continue;
+                        }
+                        for (int j = i + 1; j < unit.length; j++) {
+                            if (state.candidates(unit[j]) != pair) {
+                                continue;
+                            }
+                            for (int node : unit) {
+                                if (node != unit[i] && node != unit[j] && (state.candidates(node) & pair) != 0) {
+                                    eliminated += Integer.bitCount(state.candidates(node) & pair);
+                                    if (!state.eliminate(node, pair)) {
+                                        return CONTRADICTION;
+                                    }
+                                }
+                            }
+                            break;
+                        }
+                    }
+                }
+                return eliminated;
+            }
+        },
+        /**
+         * Два цвета строки, колонки или квадрата доступны только одним и тем же двум вершинам -
+         * остальные цвета этих вершин исключаются
+         */
+        HIDDEN_PAIRS {
+            @Override
+            int apply(SearchState state) {
+                int eliminated = 0;
+                final int[] places = state.colorPlaces();
+                for (int[] unit : state.board().units) {
+                    // Для каждого цвета - маска позиций в строке, колонке или квадрате, где он доступен
+                    for (int color = 1; color < places.length; color++) {
+                        places[color] = 0;
+                    }
+                    for (int position = 0; position < unit.length; position++) {
+                        int colors = state.candidates(unit[position]);
+                        while (colors != 0) {
+                            places[Integer.numberOfTrailingZeros(colors) + 1] |= 1 << position;
+                            colors &= colors - 1;
+                        }
+                    }
+                    for (int first = 1; first < places.length; first++) {
+                        if (Integer.bitCount(places[first]) != 2) {
+                            continue;
+                        }
+                        for (int second = first + 1; second < places.length; second++) {
+                            if (places[second] != places[first]) {
+                                continue;
+                            }
+                            final int pair = Board.colorBit(first) | Board.colorBit(second);
+                            int positions = places[first];
+                            while (positions != 0) {
+                                final int node = unit[Integer.numberOfTrailingZeros(positions)];
+                                positions &= positions - 1;
+                                final int others = state.candidates(node) & ~pair;
+                                if (others != 0) {
+                                    eliminated += Integer.bitCount(others);
+                                    if (!state.eliminate(node, others)) {
+                                        return CONTRADICTION;
+                                    }
+                                }
+                            }
+                            break;
+                        }
+                    }
+                }
+                return eliminated;
+            }
+        };
+
+        /**
+         * Результат {@link #apply(SearchState)}: докрасить вершины невозможно
+         */
+        static final int CONTRADICTION = -1;
+
+        /**
+         * Применяет технику один раз ко всем строкам, колонкам и квадратам
+         * @return количество исключенных кандидатов или {@link #CONTRADICTION}
+         */
+        abstract int apply(SearchState state);
+    }
+
+    private static int union(SearchState state, int[] nodes) {
+        int colors = 0;
+        for (int node : nodes) {
+            colors |= state.candidates(node);
+        }
+        return colors;
+    }
+
+    /**
+     * @return количество исключенных кандидатов или {@link Technique#CONTRADICTION}
+     */
+    private static int eliminate(SearchState state, int[] nodes, int colors) {
+        int eliminated = 0;
+        for (int node : nodes) {
+            final int removed = state.candidates(node) & colors;
+            if (removed != 0) {
+                eliminated += Integer.bitCount(removed);
+                if (!state.eliminate(node, removed)) {
+                    return Technique.CONTRADICTION;
+                }
+            }
+        }
+        return eliminated;
+    }
+
+    private final Set<Technique> techniques;
+    private final Technique[] rounds;
+
+    private Propagation(Set<Technique> techniques) {
+        this.techniques = techniques;
+        this.rounds = techniques.stream().filter(t -> t != Technique.NAKED_SINGLES).toArray(Technique[]::new);
+    }
+
+    /**
+     * @return набор со всеми техниками
+     */
+    public static Propagation all() {
+        return new Propagation(EnumSet.allOf(Technique.class));
+    }
+
+    /**
+     * @return набор без техник - чистый перебор
+     */
+    public static Propagation none() {
+        return new Propagation(EnumSet.noneOf(Technique.class));
+    }
+
+    public static Propagation of(Technique first, Technique... rest) {
+        return new Propagation(EnumSet.of(first, rest));
+    }
+
+    public boolean isEnabled(Technique technique) {
+        return techniques.contains(technique);
+    }
+
+    /**
+     * Техники, применяемые перед ветвлением (кроме {@link Technique#NAKED_SINGLES})
+     */
+    Technique[] rounds() {
+        return rounds;
+    }
+
+    /**
+     * Наборы с одними и теми же техниками равны
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Propagation && techniques.equals(((Propagation) o).techniques);
+    }
+
+    @Override
+    public int hashCode() {
+        return techniques.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Propagation" + techniques;
+    }
+}
@@ -0,0 +1,937 @@
+package ru.ggershevich;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Состояние перебора алгоритма {@link SudokuSolver#solve(int[])}.
+ * <p>
+ * Для каждой строки, колонки и квадрата хранится маска использованных цветов, для каждой неокрашенной вершины -
+ * маска доступных цветов. При окраске вершины маски обновляются только у ее соседей, вершины с единственным
+ * доступным цветом ставятся в очередь и окрашиваются следом. Поэтому стоимость распространения зависит
+ * от количества изменившихся вершин, а не от размера поля.
+ * <p>
+ * Перебор ведется на одном состоянии: каждое изменение записывается в стек (trail), при возврате из ветки
+ * изменения откатываются до сохраненной отметки. Промежуточные массивы выделяются по одному на уровень
+ * рекурсии и переиспользуются, поэтому после прогрева перебор не создает объектов.
+ * <p>
+ * Перед каждым ветвлением применяются техники исключения кандидатов из {@link Propagation}. Если задана таблица
+ * тупиков ({@link NogoodTable}), состояние сначала ищется в ней, а после перебора всех веток без решения - записывается.
+ * <p>
+ * На каждом уровне рекурсии либо выбранный цвет расставляется во все оставшиеся строки, либо, при адаптивном
+ * ветвлении ({@link SolverConfig.Branching#ADAPTIVE}), перебираются цвета одной вершины - если так веток меньше.
+ * Глубина рекурсии не превышает количества вершин.
+ */
+final class SearchState {
+    /**
+     * Срок проверяется раз в столько комбинаций, степень двойки
+     */
+    static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    /**
+     * Результат подготовки ветвления {@link #branch(int)}
+     */
+    enum Step {
+        /**
+         * Докрасить вершины невозможно
+         */
+        DEAD,
+        /**
+         * Все вершины окрашены корректно
+         */
+        SOLVED,
+        /**
+         * Нужно перебирать комбинации выбранного цвета
+         */
+        BRANCH
+    }
+
+    private final Board board;
+    private final Propagation propagation;
+    private final boolean nakedSingles;
+    private final SolverConfig.Branching branching;
+    /**
+     * Таблицы поля {@link #board}, скопированы в поля для быстрого доступа
+     */
+    private final int numOfNodes;
+    private final int[] rowOf;
+    private final int[] columnOf;
+    private final int[] boxOf;
+    private final int[][] neighbours;
+    private final long[] eliminations = new long[Propagation.Technique.values().length];
+    /**
+     * Статистика перебора, см. {@link SolveStats}
+     */
+    private long combinationsTried;
+    private long backtracks;
+    private long nakedSinglesPlaced;
+    private int maxDepth;
+    private long nogoodLookups;
+    private long nogoodHits;
+    /**
+     * Таблица тупиков потока или null
+     */
+    private final NogoodTable nogoods;
+    /**
+     * Хеши масок {@link #candidates} для таблицы тупиков, обновляются при каждом изменении маски и при откате
+     */
+    private long nogoodIndex;
+    private long nogoodCheck;
+    /**
+     * Ограничения текущего решения и сработавшее ограничение (null, пока перебор не прерван)
+     */
+    private SolveLimits limits = SolveLimits.none();
+    private SolveResult.Status interruption;
+    /**
+     * Состояние занято решением, см. {@link ColoringSolver}
+     */
+    boolean inUse;
+
+    private final int[] nodes;
+    private final int[] candidates;
+    private final int[] rowColors;
+    private final int[] columnColors;
+    private final int[] boxColors;
+    private final int[] colorCount;
+    private int coloredCount;
+    private boolean dead;
+
+    /**
+     * Стек изменений: индекс вершины (для окраски - ~индекс) и прежняя маска доступных цветов.
+     * Каждое изменение либо окрашивает вершину, либо убирает у нее хотя бы один доступный цвет
+     */
+    private final int[] trailNodes;
+    private final int[] trailCandidates;
+    private int trailSize;
+
+    /**
+     * Очередь вершин, у которых остался единственный доступный цвет
+     */
+    private final int[] singles;
+    private int singlesSize;
+
+    /**
+     * Промежуточные буферы: по элементу на цвет; по элементу на уровень рекурсии, для ветвления по цвету -
+     * массив на цвет, создается при первом ветвлении по цвету на этом уровне
+     */
+    private final int[] colorFrequencies;
+    private final int[] colorPlaces;
+    private final int[][][] combinations;
+    /**
+     * Для каждой позиции комбинации: строка, где цвета еще нет, и отметка стека изменений перед окраской вершины
+     * этой позиции. Маска позиций, вершину которых окрасило распространение, а не перебор
+     */
+    private final int[][] positionRows;
+    private final int[][] positionMarks;
+    private final int[] propagatedPositions;
+    /**
+     * Колонки и квадраты, где цвета еще нет (номера из {@link Board#units}), для проверки вперед
+     */
+    private final int[][] missingUnits;
+    private final int[] missingUnitCount;
+    private final int[] selectedColor;
+    private final int[] powerOfCombination;
+    /**
+     * Вершина, цвета которой перебираются на уровне, или -1 для ветвления по цвету.
+     * Отметка стека изменений перед окраской этой вершины
+     */
+    private final int[] branchNode;
+    private final int[] branchMark;
+
+    /**
+     * @param nodes массив окраски вершин, копируется
+     * @param propagation техники исключения кандидатов
+     */
+    SearchState(Board board, int[] nodes, Propagation propagation) {
+        this(board, nodes, propagation, SolverConfig.defaults().branching());
+    }
+
+    SearchState(Board board, int[] nodes, Propagation propagation, SolverConfig.Branching branching) {
+        this(board, propagation, branching);
+        load(nodes);
+    }
+
+    /**
+     * Пустое состояние для повторного использования, пример загружается {@link #load(int[])}
+     */
+    SearchState(Board board, Propagation propagation, SolverConfig.Branching branching) {
+        this(board, propagation, branching, null);
+    }
+
+    /**
+     * Пустое состояние с настройками config, в том числе с собственной таблицей тупиков
+     */
+    SearchState(SolverConfig config) {
+        this(config.board(), config.propagation(), config.branching(),
+                config.nogoodEntries() > 0 ? new NogoodTable(config.board(), config.nogoodEntries()) : null);
+    }
+
+    private SearchState(Board board, Propagation propagation, SolverConfig.Branching branching, NogoodTable nogoods) {
+        this(board, propagation, branching, nogoods, new int[board.cells], new int[board.cells], new int[board.size],
+                new int[board.size], new int[board.size], new int[board.size + 1]);
+    }
+
+    private SearchState(Board board, Propagation propagation, SolverConfig.Branching branching, NogoodTable nogoods,
+                        int[] nodes, int[] candidates, int[] rowColors, int[] columnColors, int[] boxColors,
+                        int[] colorCount) {
+        this.board = board;
+        this.propagation = propagation;
+        this.nakedSingles = propagation.isEnabled(Propagation.Technique.NAKED_SINGLES);
+        this.branching = branching;
+        this.nogoods = nogoods;
+        this.numOfNodes = board.cells;
+        this.rowOf = board.rowOf;
+        this.columnOf = board.columnOf;
+        this.boxOf = board.boxOf;
+        this.neighbours = board.neighbours;
+        this.nodes = nodes;
+        this.candidates = candidates;
+        this.rowColors = rowColors;
+        this.columnColors = columnColors;
+        this.boxColors = boxColors;
+        this.colorCount = colorCount;
+
+        final int colors = board.size + 1;
+        final int depths = numOfNodes + 1;
+        trailNodes = new int[numOfNodes * colors];
+        trailCandidates = new int[numOfNodes * colors];
+        singles = new int[numOfNodes];
+        colorFrequencies = new int[colors];
+        colorPlaces = new int[colors];
+        combinations = new int[depths][][];
+        positionRows = new int[depths][];
+        positionMarks = new int[depths][];
+        propagatedPositions = new int[depths];
+        missingUnits = new int[depths][];
+        missingUnitCount = new int[depths];
+        selectedColor = new int[depths];
+        powerOfCombination = new int[depths];
+        branchNode = new int[depths];
+        branchMark = new int[depths];
+    }
+
+    /**
+     * Загружает новый пример. Массивы и промежуточные буферы остаются прежними, статистика обнуляется
+     * @param nodes массив окраски вершин, копируется
+     */
+    void load(int[] nodes) {
+        Arrays.fill(this.nodes, 0);
+        Arrays.fill(candidates, board.allColors);
+        Arrays.fill(rowColors, 0);
+        Arrays.fill(columnColors, 0);
+        Arrays.fill(boxColors, 0);
+        Arrays.fill(colorCount, 0);
+        coloredCount = 0;
+        dead = false;
+        trailSize = 0;
+        singlesSize = 0;
+        combinationsTried = 0;
+        backtracks = 0;
+        nakedSinglesPlaced = 0;
+        maxDepth = 0;
+        nogoodLookups = 0;
+        nogoodHits = 0;
+        Arrays.fill(eliminations, 0);
+        limits = SolveLimits.none();
+        interruption = null;
+
+        for (int i = 0; i < numOfNodes && !dead; i++) {
+            if (nodes[i] != 0) {
+                dead = !assign(i, nodes[i]);
+            }
+        }
+        dead = dead || !propagate();
+        // Заданные вершины не откатываются
+        trailSize = 0;
+        if (nogoods != null) {
+            nogoodIndex = nogoods.hash(candidates);
+            nogoodCheck = nogoods.check();
+        }
+    }
+
+    private SearchState(SearchState source) {
+        this(source.board, source.propagation, source.branching, null, source.nodes.clone(), source.candidates.clone(),
+                source.rowColors.clone(), source.columnColors.clone(), source.boxColors.clone(),
+                source.colorCount.clone());
+        this.coloredCount = source.coloredCount;
+        this.dead = source.dead;
+    }
+
+    /**
+     * @return копия текущего массива окраски вершин
+     */
+    int[] nodes() {
+        return Arrays.copyOf(nodes, numOfNodes);
+    }
+
+    /**
+     * @return новое состояние с той же окраской вершин и масками, для перебора ветки в другом потоке.
+     * Таблица тупиков не копируется
+     */
+    SearchState copy() {
+        return new SearchState(this);
+    }
+
+    /**
+     * Переносит количество исключенных в этом состоянии кандидатов в накопительные счетчики
+     * @param totals счетчики по {@link Propagation.Technique#ordinal()}
+     */
+    void flushEliminations(LongAdder[] totals) {
+        for (int i = 0; i < eliminations.length; i++) {
+            if (eliminations[i] > 0) {
+                totals[i].add(eliminations[i]);
+                eliminations[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * @return статистика перебора на этом состоянии
+     */
+    SolveStats stats(long elapsedNanos) {
+        return new SolveStats(combinationsTried, maxDepth, nakedSinglesPlaced, backtracks, nogoodLookups, nogoodHits,
+                eliminations.clone(), elapsedNanos);
+    }
+
+    /**
+     * Ограничения для следующего {@link #search(int)}, действуют до загрузки нового примера
+     */
+    void limit(SolveLimits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * @return ограничение, прервавшее перебор, или null
+     */
+    SolveResult.Status interruption() {
+        return interruption;
+    }
+
+    /**
+     * Рекурсивный перебор начиная с уровня depth. Если решение найдено - окраска остается в состоянии.
+     * Перебор прекращается при срабатывании ограничения, см. {@link #interruption()}
+     * @return true, если решение найдено
+     */
+    boolean search(int depth) {
+        maxDepth = Math.max(maxDepth, depth);
+        long key = 0;
+        long check = 0;
+        if (nogoods != null) {
+            key = nogoodIndex;
+            check = nogoodCheck;
+            if (isNogood(key, check)) {
+                return false;
+            }
+        }
+        final Step step = branch(depth);
+        if (step == Step.SOLVED) {
+            return true;
+        }
+        if (step == Step.BRANCH) {
+            final int mark = trailSize;
+            boolean first = true;
+            while (!interrupted() && nextCombination(depth, first)) {
+                first = false;
+                combinationsTried++;
+                if (search(depth + 1)) {
+                    return true;
+                }
+                backtracks++;
+            }
+            undo(mark);
+            // Прерванный перебор не доказывает, что решения нет
+            if (nogoods != null && interruption == null) {
+                nogoods.add(key, check);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Поиск состояния в таблице тупиков. На входе в перебор у каждой неокрашенной вершины есть доступный цвет
+     * (иначе комбинация отброшена), поэтому маски доступных цветов однозначно задают оставшуюся задачу
+     */
+    private boolean isNogood(long key, long check) {
+        nogoodLookups++;
+        if (nogoods.contains(key, check)) {
+            nogoodHits++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Проверка ограничений перед каждой комбинацией: бюджет и флаг - каждый раз, срок - раз в
+     * {@link #DEADLINE_CHECK_INTERVAL} комбинаций, чтобы не вызывать System.nanoTime слишком часто
+     */
+    private boolean interrupted() {
+        if (interruption == null) {
+            if (combinationsTried >= limits.combinationBudget()) {
+                interruption = SolveResult.Status.BUDGET_EXCEEDED;
+            } else if (limits.isCancelled()) {
+                interruption = SolveResult.Status.CANCELLED;
+            } else if ((combinationsTried & (DEADLINE_CHECK_INTERVAL - 1)) == 0 && limits.isExpired()) {
+                interruption = SolveResult.Status.TIMED_OUT;
+            }
+        }
+        return interruption != null;
+    }
+
+    /**
+     * Перебор всех решений начиная с уровня depth, пока счетчик не наберет достаточно решений.
+     * В отличие от {@link #search(int)} окраска откатывается и после найденного решения,
+     * поэтому по окончании состояние остается прежним. Ограничения - как у {@link #search(int)}:
+     * прерванный подсчет неполон
+     */
+    void count(int depth, SolutionCounter counter) {
+        maxDepth = Math.max(maxDepth, depth);
+        long key = 0;
+        long check = 0;
+        if (nogoods != null) {
+            key = nogoodIndex;
+            check = nogoodCheck;
+            if (isNogood(key, check)) {
+                return;
+            }
+        }
+        final long found = counter.count();
+        final int mark = trailSize;
+        final Step step = branch(depth);
+        if (step == Step.SOLVED) {
+            counter.found(this);
+        } else if (step == Step.BRANCH) {
+            boolean first = true;
+            while (!counter.isDone() && !interrupted() && nextCombination(depth, first)) {
+                first = false;
+                combinationsTried++;
+                count(depth + 1, counter);
+                backtracks++;
+            }
+            if (nogoods != null && !counter.isDone() && interruption == null && counter.count() == found) {
+                nogoods.add(key, check);
+            }
+        }
+        undo(mark);
+    }
+
+    /**
+     * Выполняет шаги 0-4 алгоритма на уровне depth: применяет техники исключения кандидатов,
+     * выбирает самый редкий цвет и строки, колонки и квадраты, где его еще нет.
+     * Вершины с единственным доступным цветом к этому моменту уже окрашены.
+     * <p>
+     * При адаптивном ветвлении оценки количества веток сравниваются: для цвета - произведение количества
+     * доступных ему вершин по строкам без него (верхняя граница количества комбинаций), для вершины с наименьшим
+     * количеством доступных цветов - это количество в степени {@link #powerOfCombination(int)}, то есть столько же
+     * окрашенных вершин при ветвлении по вершинам. Если вершина дешевле, перебираются ее цвета
+     */
+    Step branch(int depth) {
+        if (!reduce()) {
+            return Step.DEAD;
+        }
+        if (coloredCount == numOfNodes) {
+            return board.isSolution(nodes) ? Step.SOLVED : Step.DEAD;
+        }
+
+        // Частота с которой каждый цвет встречается среди доступных
+        Arrays.fill(colorFrequencies, 0);
+        for (int i = 0; i < numOfNodes; i++) {
+            int colors = candidates[i];
+            while (colors != 0) {
+                colorFrequencies[Integer.numberOfTrailingZeros(colors) + 1]++;
+                colors &= colors - 1;
+            }
+        }
+
+        // Выбираем самый редкий цввет
+        // На пустом поле каждый цвет доступен во всех вершинах, поэтому начальное значение больше
+        int minFrequency = Integer.MAX_VALUE;
+        int color = 0;
+        for (int i = 1; i < colorFrequencies.length; i++) {
+            // colorFrequencies[i] > 0 - цвета для которых нет доступного места уже расставлены и нас не интересуют
+            if (colorFrequencies[i] > 0 && colorFrequencies[i] < minFrequency) {
+                minFrequency = colorFrequencies[i];
+                color = i;
+            }
+        }
+        selectedColor[depth] = color;
+
+        final int selectedColorBit = Board.colorBit(color);
+        // Вершины где этот цвет уже стоит
+        final int power = board.size - colorCount[color];
+        powerOfCombination[depth] = power;
+        if (positionRows[depth] == null) {
+            combinations[depth] = new int[board.size + 1][];
+            positionRows[depth] = new int[board.size];
+            positionMarks[depth] = new int[board.size];
+            missingUnits[depth] = new int[2 * board.size];
+        }
+        if (combinations[depth][power] == null) {
+            combinations[depth][power] = new int[power];
+        }
+
+        // Позиция комбинации - строка, где цвета еще нет
+        final int[] rows = positionRows[depth];
+        int position = 0;
+        long estimate = 1;
+        for (int row = 0; row < board.size; row++) {
+            if ((rowColors[row] & selectedColorBit) == 0) {
+                final int places = countCandidates(board.units[row], selectedColorBit);
+                if (places == 0) {
+                    return Step.DEAD;
+                }
+                rows[position++] = row;
+                estimate = Math.min(estimate * places, Integer.MAX_VALUE);
+            }
+        }
+
+        // Колонки и квадраты, где цвета еще нет
+        final int[] units = missingUnits[depth];
+        int unitCount = 0;
+        for (int column = 0; column < board.size; column++) {
+            if ((columnColors[column] & selectedColorBit) == 0) {
+                units[unitCount++] = board.size + column;
+            }
+        }
+        for (int box = 0; box < board.size; box++) {
+            if ((boxColors[box] & selectedColorBit) == 0) {
+                units[unitCount++] = 2 * board.size + box;
+            }
+        }
+        missingUnitCount[depth] = unitCount;
+        if (!reachable(depth, -1)) {
+            return Step.DEAD;
+        }
+
+        branchNode[depth] = -1;
+        if (branching == SolverConfig.Branching.ADAPTIVE) {
+            final int node = mostConstrainedNode();
+            final int width = Integer.bitCount(candidates[node]);
+            long cellEstimate = 1;
+            for (int i = 0; i < power && cellEstimate < estimate; i++) {
+                cellEstimate *= width;
+            }
+            if (cellEstimate < estimate) {
+                branchNode[depth] = node;
+                powerOfCombination[depth] = 1;
+                if (combinations[depth][1] == null) {
+                    combinations[depth][1] = new int[1];
+                }
+                combinations[depth][1][0] = node;
+            }
+        }
+        return Step.BRANCH;
+    }
+
+    /**
+     * @return неокрашенная вершина с наименьшим количеством доступных цветов, из равных - с наибольшим количеством
+     * неокрашенных соседей (по таблице смежности), которым ее окраска сократит доступные цвета
+     */
+    private int mostConstrainedNode() {
+        int best = -1;
+        int bestWidth = Integer.MAX_VALUE;
+        int bestDegree = -1;
+        for (int node = 0; node < numOfNodes; node++) {
+            final int colors = candidates[node];
+            if (colors == 0) {
+                continue;
+            }
+            final int width = Integer.bitCount(colors);
+            if (width > bestWidth) {
+                continue;
+            }
+            int degree = 0;
+            for (int neighbour : neighbours[node]) {
+                if (nodes[neighbour] == 0) {
+                    degree++;
+                }
+            }
+            if (width < bestWidth || degree > bestDegree) {
+                best = node;
+                bestWidth = width;
+                bestDegree = degree;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Применяет техники исключения кандидатов без ветвления
+     * @return false, если докрасить вершины невозможно
+     */
+    boolean reduce() {
+        return !dead && applyTechniques();
+    }
+
+    /**
+     * Применяет техники исключения кандидатов по кругу, пока они что-то исключают
+     * @return false, если докрасить вершины невозможно
+     */
+    private boolean applyTechniques() {
+        final Propagation.Technique[] rounds = propagation.rounds();
+        boolean changed;
+        do {
+            changed = false;
+            for (Propagation.Technique technique : rounds) {
+                final int eliminated = technique.apply(this);
+                if (eliminated == Propagation.Technique.CONTRADICTION || !propagate()) {
+                    singlesSize = 0;
+                    return false;
+                }
+                if (eliminated > 0) {
+                    eliminations[technique.ordinal()] += eliminated;
+                    changed = true;
+                }
+            }
+        } while (changed && coloredCount < numOfNodes);
+        return true;
+    }
+
+    /**
+     * @return маска доступных цветов вершины, 0 для окрашенной вершины
+     */
+    int candidates(int node) {
+        return candidates[node];
+    }
+
+    /**
+     * @return цвет вершины, 0 для неокрашенной вершины
+     */
+    int colorOf(int node) {
+        return nodes[node];
+    }
+
+    Board board() {
+        return board;
+    }
+
+    /**
+     * Буфер для техник исключения: по элементу на цвет
+     */
+    int[] colorPlaces() {
+        return colorPlaces;
+    }
+
+    /**
+     * Окрашивает вершину. Вершины, у которых остался единственный цвет, окрашиваются после текущей техники
+     * @return false, если цвет недоступен или у соседа не осталось доступных цветов
+     */
+    boolean place(int node, int color) {
+        return assign(node, color);
+    }
+
+    /**
+     * Убирает цвета из доступных вершине
+     * @param colors маска цветов
+     * @return false, если у вершины не осталось доступных цветов
+     */
+    boolean eliminate(int node, int colors) {
+        final int current = candidates[node];
+        if ((current & colors) == 0) {
+            return true;
+        }
+        trailNodes[trailSize] = node;
+        trailCandidates[trailSize++] = current;
+        final int left = current & ~colors;
+        candidates[node] = left;
+        rehash(node, current & colors);
+        if (left == 0) {
+            return false;
+        }
+        if (nakedSingles && (left & (left - 1)) == 0) {
+            singles[singlesSize++] = node;
+        }
+        return true;
+    }
+
+    int selectedColor(int depth) {
+        return selectedColor[depth];
+    }
+
+    int powerOfCombination(int depth) {
+        return powerOfCombination[depth];
+    }
+
+    /**
+     * Следующая комбинация ветвления уровня depth, записывается в {@link #combination(int)}.
+     * <p>
+     * Комбинация строится по позициям - строкам, где цвета еще нет, и каждая выбранная вершина сразу окрашивается
+     * со всеми вершинами, у которых после этого остался единственный цвет (проверка вперед). Поэтому выбранные
+     * вершины независимы без отдельных списков независимых вершин, а часть комбинации, после которой у какой-то вершины
+     * не осталось цветов или какой-то строке, колонке или квадрату негде поставить цвет, отбрасывается вместе со
+     * всеми своими продолжениями. Если распространение само поставило цвет в строку следующей позиции,
+     * позиция занимается этой вершиной без перебора.
+     * <p>
+     * Возвращенная комбинация уже окрашена в состоянии. Следующий вызов откатывает ее (и все изменения, сделанные
+     * после нее) и ищет следующую; когда комбинации заканчиваются, состояние возвращается к моменту первого вызова
+     * @param first true для первой комбинации ветвления
+     * @return false, если комбинации закончились
+     */
+    boolean nextCombination(int depth, boolean first) {
+        if (branchNode[depth] >= 0) {
+            return nextColor(depth, first);
+        }
+        final int[] combination = combination(depth);
+        final int[] rows = positionRows[depth];
+        final int[] marks = positionMarks[depth];
+        final int color = selectedColor[depth];
+        final int last = combination.length - 1;
+        int position;
+        if (first) {
+            position = 0;
+            marks[0] = trailSize;
+            combination[0] = -1;
+            propagatedPositions[depth] = 0;
+        } else {
+            position = last;
+        }
+
+        while (position >= 0) {
+            undo(marks[position]);
+            final int positionBit = 1 << position;
+            if ((propagatedPositions[depth] & positionBit) != 0) {
+                // Вершину позиции окрасило распространение - других вариантов у позиции нет
+                propagatedPositions[depth] &= ~positionBit;
+                position--;
+                continue;
+            }
+            if (!advance(depth, position, combination, rows[position], color)) {
+                position--;
+                continue;
+            }
+            // Следующие позиции, строки которых уже получили цвет при распространении, занимаются без перебора
+            do {
+                if (position == last) {
+                    return true;
+                }
+                position++;
+                marks[position] = trailSize;
+                combination[position] = -1;
+            } while (takePropagated(depth, position, combination));
+        }
+        return false;
+    }
+
+    /**
+     * Ветвление по вершине: окрашивает вершину уровня в следующий доступный цвет, записывается в
+     * {@link #selectedColor(int)}. Окраска и откат - как у комбинаций цвета
+     * @return false, если цвета вершины закончились
+     */
+    private boolean nextColor(int depth, boolean first) {
+        final int node = branchNode[depth];
+        if (first) {
+            branchMark[depth] = trailSize;
+            selectedColor[depth] = 0;
+        } else {
+            undo(branchMark[depth]);
+        }
+        // Цвета больше уже перебранного
+        int colors = candidates[node] & -1 << selectedColor[depth];
+        while (colors != 0) {
+            final int color = Integer.numberOfTrailingZeros(colors) + 1;
+            colors &= colors - 1;
+            selectedColor[depth] = color;
+            if (assign(node, color) && propagate()) {
+                return true;
+            }
+            singlesSize = 0;
+            undo(branchMark[depth]);
+        }
+        return false;
+    }
+
+    /**
+     * @return true, если строке позиции цвет уже поставило распространение - тогда ее вершина записывается в комбинацию
+     */
+    private boolean takePropagated(int depth, int position, int[] combination) {
+        final int color = selectedColor[depth];
+        final int row = positionRows[depth][position];
+        if ((rowColors[row] & Board.colorBit(color)) == 0) {
+            return false;
+        }
+        combination[position] = nodeOfColor(row, color);
+        propagatedPositions[depth] |= 1 << position;
+        return true;
+    }
+
+
+    /**
+     * Окрашивает следующую после combination[position] вершину строки row, для которой проходит проверка вперед
+     * @return false, если таких вершин в строке не осталось
+     */
+    private boolean advance(int depth, int position, int[] combination, int row, int color) {
+        final int colorBit = Board.colorBit(color);
+        final int end = (row + 1) * board.size;
+        final int mark = positionMarks[depth][position];
+        for (int node = Math.max(combination[position] + 1, row * board.size); node < end; node++) {
+            if ((candidates[node] & colorBit) == 0) {
+                continue;
+            }
+            combination[position] = node;
+            if (assign(node, color) && propagate() && reachable(depth, position)) {
+                return true;
+            }
+            singlesSize = 0;
+            undo(mark);
+        }
+        return false;
+    }
+
+    /**
+     * Проверка вперед: в каждой строке позиций после position и в каждой колонке и квадрате без выбранного цвета
+     * цвет уже стоит или доступен хотя бы одной вершине
+     */
+    private boolean reachable(int depth, int position) {
+        final int colorBit = Board.colorBit(selectedColor[depth]);
+        final int[] rows = positionRows[depth];
+        for (int next = position + 1; next < powerOfCombination[depth]; next++) {
+            final int row = rows[next];
+            if ((rowColors[row] & colorBit) == 0 && !hasCandidate(board.units[row], colorBit)) {
+                return false;
+            }
+        }
+        final int[] units = missingUnits[depth];
+        for (int i = 0; i < missingUnitCount[depth]; i++) {
+            final int unit = units[i];
+            final int used = unit < 2 * board.size ? columnColors[unit - board.size] : boxColors[unit - 2 * board.size];
+            if ((used & colorBit) == 0 && !hasCandidate(board.units[unit], colorBit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int countCandidates(int[] unit, int colorBit) {
+        int count = 0;
+        for (int node : unit) {
+            if ((candidates[node] & colorBit) != 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean hasCandidate(int[] unit, int colorBit) {
+        for (int node : unit) {
+            if ((candidates[node] & colorBit) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return вершина строки row, окрашенная в цвет color
+     */
+    private int nodeOfColor(int row, int color) {
+        int node = row * board.size;
+        while (nodes[node] != color) {
+            node++;
+        }
+        return node;
+    }
+
+    int[] combination(int depth) {
+        return combinations[depth][powerOfCombination[depth]];
+    }
+
+    int mark() {
+        return trailSize;
+    }
+
+    /**
+     * Откатывает изменения, сделанные после отметки mark
+     */
+    void undo(int mark) {
+        while (trailSize > mark) {
+            --trailSize;
+            final int node = trailNodes[trailSize];
+            if (node < 0) {
+                final int index = ~node;
+                final int colorBit = Board.colorBit(nodes[index]);
+                rowColors[rowOf[index]] &= ~colorBit;
+                columnColors[columnOf[index]] &= ~colorBit;
+                boxColors[boxOf[index]] &= ~colorBit;
+                colorCount[nodes[index]]--;
+                coloredCount--;
+                nodes[index] = 0;
+                candidates[index] = trailCandidates[trailSize];
+                rehash(index, trailCandidates[trailSize]);
+            } else {
+                rehash(node, candidates[node] ^ trailCandidates[trailSize]);
+                candidates[node] = trailCandidates[trailSize];
+            }
+        }
+    }
+
+    /**
+     * Обновляет хеши таблицы тупиков: у вершины node появились или исчезли цвета changed
+     */
+    private void rehash(int node, int changed) {
+        if (nogoods != null) {
+            nogoodIndex ^= nogoods.indexKey(node, changed);
+            nogoodCheck ^= nogoods.checkKey(node, changed);
+        }
+    }
+
+    /**
+     * Окрашивает вершину и убирает цвет из доступных у соседей
+     * @return false, если цвет недоступен или у соседа не осталось доступных цветов
+     */
+    private boolean assign(int index, int color) {
+        final int colorBit = Board.colorBit(color);
+        if ((candidates[index] & colorBit) == 0) {
+            return false;
+        }
+
+        trailNodes[trailSize] = ~index;
+        trailCandidates[trailSize++] = candidates[index];
+        rehash(index, candidates[index]);
+        nodes[index] = color;
+        candidates[index] = 0;
+        rowColors[rowOf[index]] |= colorBit;
+        columnColors[columnOf[index]] |= colorBit;
+        boxColors[boxOf[index]] |= colorBit;
+        colorCount[color]++;
+        coloredCount++;
+
+        for (int neighbour : neighbours[index]) {
+            final int colors = candidates[neighbour];
+            if ((colors & colorBit) != 0) {
+                trailNodes[trailSize] = neighbour;
+                trailCandidates[trailSize++] = colors;
+                final int left = colors & ~colorBit;
+                candidates[neighbour] = left;
+                rehash(neighbour, colorBit);
+                // Если для неокрашенной вершины нет доступного цвета, значит задача не решаема
+                if (left == 0) {
+                    return false;
+                }
+                // Улучшение перебора. Если у вершины нет другого доступного цвета - окрасить ее сразу
+                if (nakedSingles && (left & (left - 1)) == 0) {
+                    singles[singlesSize++] = neighbour;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Окрашивает вершины из очереди вершин с единственным доступным цветом
+     */
+    private boolean propagate() {
+        while (singlesSize > 0) {
+            final int index = singles[--singlesSize];
+            if (nodes[index] != 0) {
+                continue;
+            }
+            if (!assign(index, Integer.numberOfTrailingZeros(candidates[index]) + 1)) {
+                singlesSize = 0;
+                return false;
+            }
+            eliminations[Propagation.Technique.NAKED_SINGLES.ordinal()]++;
+            nakedSinglesPlaced++;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.ggershevich;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Счетчик найденных решений, общий для всех веток перебора, в том числе из разных потоков.
+ * Перебор прекращается, как только найдено {@code limit} решений. Первое найденное решение сохраняется.
+ */
+final class SolutionCounter {
+    private final long limit;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicReference<int[]> first = new AtomicReference<>();
+
+    /**
+     * @param limit сколько решений достаточно найти, не меньше 1
+     */
+    SolutionCounter(long limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Учитывает решение - текущую окраску вершин состояния
+     */
+    void found(SearchState state) {
+        if (count.incrementAndGet() == 1) {
+            first.set(state.nodes());
+        }
+    }
+
+    /**
+     * @return true, если найдено достаточно решений и перебор можно прекратить
+     */
+    boolean isDone() {
+        return count.get() >= limit;
+    }
+
+    /**
+     * @return количество найденных решений, не больше limit
+     */
+    long count() {
+        return Math.min(count.get(), limit);
+    }
+
+    /**
+     * @return первое найденное решение или null
+     */
+    int[] first() {
+        return first.get();
+    }
+}
@@ -0,0 +1,48 @@
+package ru.ggershevich;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Событие JFR для медленных решений. Записывается, только если решение длилось дольше порога.
+ * Порог по умолчанию - {@value #DEFAULT_THRESHOLD}, меняется настройками записи, например
+ * {@code -XX:StartFlightRecording:settings=sudoku.jfc} с {@code <setting name="threshold">20 ms</setting>}
+ * для события {@value #NAME} или {@code recording.enable(SolveEvent.NAME).withThreshold(...)}.
+ * Пока запись JFR не ведется, событие ничего не стоит, кроме создания объекта.
+ */
+@Name(SolveEvent.NAME)
+@Label("Sudoku Solve")
+@Category("Sudoku")
+@Description("Solve that took longer than the threshold")
+@Threshold(SolveEvent.DEFAULT_THRESHOLD)
+@StackTrace(false)
+final class SolveEvent extends Event {
+    static final String NAME = "ru.ggershevich.Solve";
+    static final String DEFAULT_THRESHOLD = "100 ms";
+
+    @Label("Puzzle")
+    String puzzle;
+
+    @Label("Solved")
+    boolean solved;
+
+    @Label("Status")
+    String status;
+
+    @Label("Combinations")
+    long combinations;
+
+    @Label("Max Depth")
+    int maxDepth;
+
+    @Label("Naked Singles")
+    long nakedSingles;
+
+    @Label("Backtracks")
+    long backtracks;
+}
@@ -0,0 +1,141 @@
+package ru.ggershevich;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Неизменяемые ограничения одного решения: срок, наибольшее количество перебираемых комбинаций и флаг прерывания.
+ * Когда ограничение срабатывает, перебор прекращается и решение возвращает {@link SolveResult} со статусом
+ * {@link SolveResult.Status#TIMED_OUT}, {@link SolveResult.Status#BUDGET_EXCEEDED} или
+ * {@link SolveResult.Status#CANCELLED} вместо null.
+ * <p>
+ * Срок задается моментом по {@link System#nanoTime()}, поэтому одни и те же ограничения можно передать
+ * нескольким решениям одного запроса.
+ */
+public final class SolveLimits {
+    private static final SolveLimits NONE = new SolveLimits(false, 0, Long.MAX_VALUE, null, null);
+
+    private final boolean hasDeadline;
+    private final long deadlineNanos;
+    private final long combinationBudget;
+    private final AtomicBoolean cancelled;
+    /**
+     * Флаг вызывающего, который продолжает действовать вместе с {@link #cancelled}, или null
+     */
+    private final AtomicBoolean outer;
+
+    private SolveLimits(boolean hasDeadline, long deadlineNanos, long combinationBudget, AtomicBoolean cancelled,
+                        AtomicBoolean outer) {
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+        this.combinationBudget = combinationBudget;
+        this.cancelled = cancelled;
+        this.outer = outer;
+    }
+
+    /**
+     * @return без ограничений
+     */
+    public static SolveLimits none() {
+        return NONE;
+    }
+
+    /**
+     * @param deadlineNanos момент по {@link System#nanoTime()}, после которого перебор прекращается
+     */
+    public SolveLimits withDeadline(long deadlineNanos) {
+        return new SolveLimits(true, deadlineNanos, combinationBudget, cancelled, outer);
+    }
+
+    /**
+     * Срок через timeout от текущего момента
+     */
+    public SolveLimits withTimeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout must not be negative");
+        }
+        return withDeadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * @param combinationBudget сколько комбинаций можно перебрать, не меньше 1
+     */
+    public SolveLimits withCombinationBudget(long combinationBudget) {
+        if (combinationBudget < 1) {
+            throw new IllegalArgumentException("Combination budget must be positive");
+        }
+        return new SolveLimits(hasDeadline, deadlineNanos, combinationBudget, cancelled, outer);
+    }
+
+    /**
+     * @param cancelled флаг прерывания: после его установки перебор прекращается
+     */
+    public SolveLimits withCancellation(AtomicBoolean cancelled) {
+        if (cancelled == null) {
+            throw new IllegalArgumentException("Cancellation flag must not be null");
+        }
+        return new SolveLimits(hasDeadline, deadlineNanos, combinationBudget, cancelled, null);
+    }
+
+    /**
+     * Дополнительный флаг прерывания: перебор прекращается по нему или по уже заданному флагу.
+     * {@link #cancellation()} возвращает дополнительный флаг
+     */
+    SolveLimits withAdditionalCancellation(AtomicBoolean cancelled) {
+        if (cancelled == null) {
+            throw new IllegalArgumentException("Cancellation flag must not be null");
+        }
+        return new SolveLimits(hasDeadline, deadlineNanos, combinationBudget, cancelled,
+                this.cancelled != null ? this.cancelled : outer);
+    }
+
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    public long deadlineNanos() {
+        return deadlineNanos;
+    }
+
+    /**
+     * @return сколько комбинаций можно перебрать, {@link Long#MAX_VALUE} - без ограничения
+     */
+    public long combinationBudget() {
+        return combinationBudget;
+    }
+
+    /**
+     * @return флаг прерывания или null
+     */
+    public AtomicBoolean cancellation() {
+        return cancelled;
+    }
+
+    boolean isCancelled() {
+        return cancelled != null && cancelled.get() || outer != null && outer.get();
+    }
+
+    boolean isExpired() {
+        return hasDeadline && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * Проверка ограничений, не зависящих от перебора
+     * @return статус сработавшего ограничения или null
+     */
+    SolveResult.Status check() {
+        if (isCancelled()) {
+            return SolveResult.Status.CANCELLED;
+        }
+        if (isExpired()) {
+            return SolveResult.Status.TIMED_OUT;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "SolveLimits{deadline=" + (hasDeadline ? deadlineNanos : "none")
+                + ", combinationBudget=" + combinationBudget + ", cancellable=" + (cancelled != null) + '}';
+    }
+}
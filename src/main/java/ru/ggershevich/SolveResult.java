@@ -0,0 +1,76 @@
+package ru.ggershevich;
+
+/**
+ * Решение вместе со статистикой перебора
+ * @see SudokuSolver#solveWithStats(int[])
+ * @see Solver#solve(int[], SolveLimits)
+ */
+public final class SolveResult {
+    /**
+     * Чем закончилось решение
+     */
+    public enum Status {
+        SOLVED,
+        /**
+         * Перебор закончен, решения нет
+         */
+        NO_SOLUTION,
+        /**
+         * Истек срок {@link SolveLimits#withDeadline(long)}
+         */
+        TIMED_OUT,
+        /**
+         * Перебрано {@link SolveLimits#combinationBudget()} комбинаций
+         */
+        BUDGET_EXCEEDED,
+        /**
+         * Установлен флаг {@link SolveLimits#withCancellation}
+         */
+        CANCELLED;
+
+        /**
+         * @return true, если перебор прерван ограничением и решение, возможно, есть
+         */
+        public boolean isInterrupted() {
+            return this != SOLVED && this != NO_SOLUTION;
+        }
+    }
+
+    private final Status status;
+    private final int[] solution;
+    private final SolveStats stats;
+
+    SolveResult(int[] solution, SolveStats stats) {
+        this(solution != null ? Status.SOLVED : Status.NO_SOLUTION, solution, stats);
+    }
+
+    SolveResult(Status status, int[] solution, SolveStats stats) {
+        this.status = status;
+        this.solution = solution;
+        this.stats = stats;
+    }
+
+    public Status status() {
+        return status;
+    }
+
+    /**
+     * @return массив окраски вершин или null, если решения нет или перебор прерван
+     */
+    public int[] solution() {
+        return solution;
+    }
+
+    public boolean isSolved() {
+        return status == Status.SOLVED;
+    }
+
+    public SolveStats stats() {
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return "SolveResult{status=" + status + ", stats=" + stats + '}';
+    }
+}
@@ -0,0 +1,106 @@
+package ru.ggershevich;
+
+/**
+ * Статистика одного решения алгоритмом {@link SudokuSolver#solve(int[])} или {@link DlxSolver}
+ */
+public final class SolveStats {
+    private static final long[] NO_ELIMINATIONS = new long[Propagation.Technique.values().length];
+
+    private final long combinations;
+    private final int maxDepth;
+    private final long nakedSingles;
+    private final long backtracks;
+    private final long nogoodLookups;
+    private final long nogoodHits;
+    private final long[] eliminations;
+    private final long elapsedNanos;
+
+    SolveStats(long combinations, int maxDepth, long nakedSingles, long backtracks, long elapsedNanos) {
+        this(combinations, maxDepth, nakedSingles, backtracks, 0, 0, elapsedNanos);
+    }
+
+    SolveStats(long combinations, int maxDepth, long nakedSingles, long backtracks, long nogoodLookups,
+               long nogoodHits, long elapsedNanos) {
+        this(combinations, maxDepth, nakedSingles, backtracks, nogoodLookups, nogoodHits, NO_ELIMINATIONS, elapsedNanos);
+    }
+
+    /**
+     * @param eliminations исключенные кандидаты по {@link Propagation.Technique#ordinal()}, не копируется
+     */
+    SolveStats(long combinations, int maxDepth, long nakedSingles, long backtracks, long nogoodLookups,
+               long nogoodHits, long[] eliminations, long elapsedNanos) {
+        this.combinations = combinations;
+        this.maxDepth = maxDepth;
+        this.nakedSingles = nakedSingles;
+        this.backtracks = backtracks;
+        this.nogoodLookups = nogoodLookups;
+        this.nogoodHits = nogoodHits;
+        this.eliminations = eliminations;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return сколько комбинаций перебрано (у {@link DlxSolver} - строк матрицы)
+     */
+    public long combinations() {
+        return combinations;
+    }
+
+    /**
+     * @return наибольшая достигнутая глубина рекурсии: у алгоритма раскрашивания не больше количества вершин,
+     * у {@link DlxSolver} - количество выбранных строк матрицы
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return сколько вершин окрашено как единственный доступный цвет (naked singles)
+     */
+    public long nakedSingles() {
+        return nakedSingles;
+    }
+
+    /**
+     * @return сколько раз окраска комбинации откатывалась
+     */
+    public long backtracks() {
+        return backtracks;
+    }
+
+    /**
+     * @return сколько раз состояние искалось в таблице тупиков, см. {@link SolverConfig#withNogoodTable(int)}
+     */
+    public long nogoodLookups() {
+        return nogoodLookups;
+    }
+
+    /**
+     * @return сколько состояний найдено в таблице тупиков и не перебиралось повторно
+     */
+    public long nogoodHits() {
+        return nogoodHits;
+    }
+
+    /**
+     * @return сколько кандидатов исключила техника за это решение (для одиночек - сколько вершин окрашено)
+     */
+    public long eliminations(Propagation.Technique technique) {
+        return eliminations[technique.ordinal()];
+    }
+
+    public long elapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "SolveStats{combinations=" + combinations
+                + ", maxDepth=" + maxDepth
+                + ", nakedSingles=" + nakedSingles
+                + ", backtracks=" + backtracks
+                + ", nogoodLookups=" + nogoodLookups
+                + ", nogoodHits=" + nogoodHits
+                + ", elapsedNanos=" + elapsedNanos + '}';
+    }
+}
@@ -0,0 +1,59 @@
+package ru.ggershevich;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Алгоритм решения судоку. Реализации потокобезопасны: один экземпляр можно использовать из разных потоков.
+ * @see Engine
+ */
+public interface Solver {
+
+    /**
+     * @param nodes массив окраски вершин, 0 - неокрашенная вершина. Массив не изменяется
+     * @return массив окраски вершин или null, если решения нет
+     */
+    int[] solve(int[] nodes);
+
+    /**
+     * Решение с возможностью прерывания. После установки флага решение может прекратить перебор и вернуть null.
+     * По умолчанию флаг не проверяется
+     * @param cancelled флаг прерывания, может быть null
+     */
+    default int[] solve(int[] nodes, AtomicBoolean cancelled) {
+        return solve(nodes);
+    }
+
+    /**
+     * Решение с ограничениями: срок, бюджет комбинаций, флаг прерывания. Если ограничение сработало, результат
+     * имеет статус {@link SolveResult.Status#TIMED_OUT}, {@link SolveResult.Status#BUDGET_EXCEEDED} или
+     * {@link SolveResult.Status#CANCELLED}, поэтому его можно отличить от примера без решения и, например,
+     * повторить другим алгоритмом.
+     * <p>
+     * По умолчанию ограничения проверяются только до и после решения, а внутри - только флаг прерывания
+     * через {@link #solve(int[], AtomicBoolean)}, бюджет комбинаций не учитывается.
+     */
+    default SolveResult solve(int[] nodes, SolveLimits limits) {
+        final long start = System.nanoTime();
+        SolveResult.Status status = limits.check();
+        int[] solution = null;
+        if (status == null) {
+            solution = solve(nodes, limits.cancellation());
+            status = solution != null ? SolveResult.Status.SOLVED : limits.check();
+            if (status == null) {
+                status = SolveResult.Status.NO_SOLUTION;
+            }
+        }
+        return new SolveResult(status, solution, new SolveStats(0, 0, 0, 0, System.nanoTime() - start));
+    }
+
+    /**
+     * @param example строка из 81 символа 0-9. 0 означает что соответствующая ячейка не окрашена
+     * @return решение в том же виде или пустая строка, если решения нет
+     */
+    default String solve(String example) {
+        if (!SudokuSolver.checkExample(example)) {
+            throw new IllegalArgumentException("Example must be string of " + SudokuSolver.NUM_OF_NODES + " digits");
+        }
+        return SudokuSolver.toString(solve(SudokuSolver.prepare(example)));
+    }
+}
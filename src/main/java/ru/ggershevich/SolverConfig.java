@@ -0,0 +1,109 @@
+package ru.ggershevich;
+
+/**
+ * Неизменяемые настройки {@link ColoringSolver}. Изменение настройки возвращает новый объект,
+ * поэтому одни и те же настройки можно передавать в разные потоки и решатели.
+ */
+public final class SolverConfig {
+    /**
+     * Наибольший размер таблицы тупиков, записей по 8 байт
+     */
+    public static final int MAX_NOGOOD_ENTRIES = 1 << 26;
+
+    /**
+     * Выбор ветвления на каждом уровне перебора
+     */
+    public enum Branching {
+        /**
+         * Всегда самый редкий цвет: комбинация расставляет его во все строки, где его еще нет
+         */
+        COLOR,
+        /**
+         * Самый редкий цвет или вершина с наименьшим количеством доступных цветов - у кого оценка
+         * количества веток меньше, см. {@link SearchState#branch(int)}
+         */
+        ADAPTIVE
+    }
+
+    private final Propagation propagation;
+    private final Board board;
+    private final Branching branching;
+    private final int nogoodEntries;
+
+    private SolverConfig(Propagation propagation, Board board, Branching branching, int nogoodEntries) {
+        this.propagation = propagation;
+        this.board = board;
+        this.branching = branching;
+        this.nogoodEntries = nogoodEntries;
+    }
+
+    /**
+     * @return настройки по умолчанию: все техники исключения кандидатов, поле 9 x 9, адаптивное ветвление
+     */
+    public static SolverConfig defaults() {
+        return new SolverConfig(Propagation.all(), Board.standard(), Branching.ADAPTIVE, 0);
+    }
+
+    /**
+     * @param propagation техники исключения кандидатов, применяемые перед каждым ветвлением
+     */
+    public SolverConfig withPropagation(Propagation propagation) {
+        if (propagation == null) {
+            throw new IllegalArgumentException("Propagation must not be null");
+        }
+        return new SolverConfig(propagation, board, branching, nogoodEntries);
+    }
+
+    /**
+     * @param board размер поля, например {@code Board.of(4)} для 16 x 16
+     */
+    public SolverConfig withBoard(Board board) {
+        if (board == null) {
+            throw new IllegalArgumentException("Board must not be null");
+        }
+        return new SolverConfig(propagation, board, branching, nogoodEntries);
+    }
+
+    public SolverConfig withBranching(Branching branching) {
+        if (branching == null) {
+            throw new IllegalArgumentException("Branching must not be null");
+        }
+        return new SolverConfig(propagation, board, branching, nogoodEntries);
+    }
+
+    /**
+     * @param entries размер таблицы тупиков ({@link NogoodTable}) на поток, округляется вверх до степени двойки;
+     * 0 - без таблицы
+     */
+    public SolverConfig withNogoodTable(int entries) {
+        if (entries < 0 || entries > MAX_NOGOOD_ENTRIES) {
+            throw new IllegalArgumentException("Nogood table size must be between 0 and " + MAX_NOGOOD_ENTRIES);
+        }
+        return new SolverConfig(propagation, board, branching, entries);
+    }
+
+    public Propagation propagation() {
+        return propagation;
+    }
+
+    public Board board() {
+        return board;
+    }
+
+    public Branching branching() {
+        return branching;
+    }
+
+    /**
+     * @return размер таблицы тупиков, 0 - без таблицы
+     */
+    public int nogoodEntries() {
+        return nogoodEntries;
+    }
+
+    @Override
+    public String toString() {
+        return "SolverConfig{propagation=" + propagation + ", board=" + board + ", branching=" + branching
+                + ", nogoodEntries=" + nogoodEntries + '}';
+    }
+}
@@ -0,0 +1,619 @@
+package ru.ggershevich;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP сервер для решения примеров без запуска JVM на каждый пример. Использует встроенный в JDK
+ * {@code com.sun.net.httpserver}.
+ * <ul>
+ * <li>{@code POST /solve} - пример из 81 символа в теле запроса (или {@code GET /solve?puzzle=...}),
+ * ответ - JSON {@code {"status":"solved","solution":"...","micros":123}}</li>
+ * <li>{@code POST /batch} - примеры по одному в строке, ответ - по строке JSON на каждый пример (NDJSON)
+ * в порядке входа</li>
+ * <li>{@code GET /metrics} - счетчики, пропускная способность и гистограммы задержек в текстовом формате Prometheus</li>
+ * </ul>
+ * Примеры решаются пулом из {@code threads} потоков с очередью на {@code queueCapacity} примеров.
+ * Если очередь заполнена, запрос сразу получает 503 - сервер не накапливает работу, которую не успеет сделать.
+ * Также 503 получает запрос, пришедший, когда заняты все потоки обработчиков.
+ * У каждого запроса есть срок ({@code deadlineMillis} или заголовок {@value #DEADLINE_HEADER}): он передается
+ * решателю в {@link SolveLimits}, по его истечении перебор прерывается и пример получает статус timeout. Поэтому сложные примеры не занимают потоки дольше срока
+ * и не увеличивают задержку простых.
+ * <p>
+ * Тело {@code /solve} - не больше {@value #MAX_SOLVE_BODY} байт, тело {@code /batch} - не больше
+ * {@value #MAX_BATCH_BODY} байт и строки не длиннее {@value #MAX_LINE_LENGTH} символов, иначе 413.
+ * Исключение решателя дает 500 (в {@code /batch} - строку со статусом error).
+ */
+class SolverServer {
+    static final String DEADLINE_HEADER = "X-Deadline-Millis";
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final String NDJSON = "application/x-ndjson; charset=utf-8";
+    private static final String TEXT = "text/plain; version=0.0.4; charset=utf-8";
+    /**
+     * Верхние границы корзин гистограмм в /metrics, в микросекундах
+     */
+    private static final long[] HISTOGRAM_BOUNDS = {100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000};
+    static final int MAX_SOLVE_BODY = 4096;
+    static final long MAX_BATCH_BODY = 64L << 20;
+    static final int MAX_LINE_LENGTH = 4096;
+    private static final long HANDLER_IDLE_SECONDS = 30;
+    /**
+     * Потоки обработчиков сверх примеров в работе и в очереди: для коротких запросов вроде /metrics
+     */
+    static final int SPARE_HANDLERS = 2;
+
+    enum Status {
+        SOLVED, NOT_FOUND, INVALID, TIMEOUT, REJECTED, TOO_LARGE, ERROR;
+
+        String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Solver solver;
+    private final long deadlineMillis;
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor handlers;
+    /**
+     * Отметка потока приема соединений, выполняющего запрос, когда все обработчики заняты
+     */
+    private final ThreadLocal<Boolean> overloaded = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder[] puzzles = new LongAdder[Status.values().length];
+    private final LongAdder solveRequests = new LongAdder();
+    private final LongAdder batchRequests = new LongAdder();
+    private final LatencyHistogram solveLatency = new LatencyHistogram();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    /**
+     * @param address адрес, порт 0 - любой свободный
+     * @param threads количество потоков, решающих примеры
+     * @param queueCapacity сколько примеров может ждать в очереди
+     * @param deadlineMillis срок запроса по умолчанию
+     */
+    SolverServer(InetSocketAddress address, int threads, int queueCapacity, long deadlineMillis, Solver solver)
+            throws IOException {
+        if (threads < 1 || queueCapacity < 1 || deadlineMillis < 1) {
+            throw new IllegalArgumentException("Threads, queue capacity and deadline must be positive");
+        }
+        if (solver == null) {
+            throw new IllegalArgumentException("Solver must not be null");
+        }
+        this.solver = solver;
+        this.deadlineMillis = deadlineMillis;
+        for (int i = 0; i < puzzles.length; i++) {
+            puzzles[i] = new LongAdder();
+        }
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        // Потоки обработчиков в основном ждут результатов: больше, чем примеров в работе и в очереди, плюс запас
+        // на /metrics и отказы, не нужно. Если заняты все, запрос выполняет поток приема соединений, но /solve
+        // и /batch сразу отвечают 503, не читая тело: поток приема не ждет медленных клиентов и решателя
+        final int handlerThreads = threads + queueCapacity + SPARE_HANDLERS;
+        handlers = new ThreadPoolExecutor(handlerThreads, handlerThreads, HANDLER_IDLE_SECONDS, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), this::runOverloaded);
+        handlers.allowCoreThreadTimeOut(true);
+        server = HttpServer.create(address, 0);
+        server.setExecutor(handlers);
+        server.createContext("/solve", unlessOverloaded(this::handleSolve));
+        server.createContext("/batch", unlessOverloaded(this::handleBatch));
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Обработчик отказа пула обработчиков: запрос выполняется в вызывающем потоке с отметкой перегрузки
+     */
+    private void runOverloaded(Runnable task, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            return;
+        }
+        overloaded.set(Boolean.TRUE);
+        try {
+            task.run();
+        } finally {
+            overloaded.remove();
+        }
+    }
+
+    /**
+     * При перегрузке - 503 без чтения тела и закрытие обмена вместо handler
+     */
+    private HttpHandler unlessOverloaded(HttpHandler handler) {
+        return exchange -> {
+            if (overloaded.get() == null) {
+                handler.handle(exchange);
+                return;
+            }
+            try {
+                reject(exchange);
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    void start() {
+        server.start();
+    }
+
+    void stop() {
+        server.stop(0);
+        workers.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    /**
+     * @return порт, на котором сервер принимает запросы
+     */
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        final long start = System.nanoTime();
+        solveRequests.increment();
+        try {
+            final String example;
+            if ("GET".equals(exchange.getRequestMethod())) {
+                example = queryParameter(exchange.getRequestURI(), "puzzle");
+            } else if ("POST".equals(exchange.getRequestMethod())) {
+                final String body = readBody(exchange, MAX_SOLVE_BODY);
+                if (body == null) {
+                    tooLarge(exchange);
+                    return;
+                }
+                example = body.trim();
+            } else {
+                respond(exchange, 405, JSON, "{\"error\":\"Use GET or POST\"}");
+                return;
+            }
+
+            if (example == null || !SudokuSolver.checkExample(example)) {
+                puzzles[Status.INVALID.ordinal()].increment();
+                respond(exchange, 400, JSON, json(Status.INVALID, null, -1, -1));
+                return;
+            }
+
+            final long deadline = start + deadlineNanos(exchange);
+            final AtomicBoolean cancelled = new AtomicBoolean();
+            final SolveLimits limits = SolveLimits.none().withDeadline(deadline).withCancellation(cancelled);
+            final Future<Result> future;
+            try {
+                future = workers.submit(() -> solve(SudokuSolver.prepare(example), limits));
+            } catch (RejectedExecutionException e) {
+                reject(exchange);
+                return;
+            }
+
+            final Result result = await(future, cancelled, deadline);
+            puzzles[result.status.ordinal()].increment();
+            final int code = result.status == Status.TIMEOUT ? 504 : result.status == Status.ERROR ? 500 : 200;
+            respond(exchange, code, JSON, json(result.status, result.solution, -1, result.micros));
+        } finally {
+            requestLatency.record(System.nanoTime() - start);
+            exchange.close();
+        }
+    }
+
+    /**
+     * Примеры отправляются в пул по мере чтения. Если очередь заполнена уже на первом примере - 503,
+     * иначе запрос ждет, пока решится его самый старый пример, и пробует снова
+     */
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        final long start = System.nanoTime();
+        batchRequests.increment();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, JSON, "{\"error\":\"Use POST\"}");
+                return;
+            }
+            if (contentLength(exchange) > MAX_BATCH_BODY) {
+                tooLarge(exchange);
+                return;
+            }
+            final long deadline = start + deadlineNanos(exchange);
+            final AtomicBoolean cancelled = new AtomicBoolean();
+            final SolveLimits limits = SolveLimits.none().withDeadline(deadline).withCancellation(cancelled);
+            final Deque<Pending> window = new ArrayDeque<>();
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new LimitedInputStream(exchange.getRequestBody(), MAX_BATCH_BODY), StandardCharsets.US_ASCII));
+            final StringBuilder buffer = new StringBuilder(128);
+            Writer out = null;
+            long line = 0;
+            boolean tooLarge = false;
+            String example;
+            while (true) {
+                try {
+                    example = readLine(reader, buffer);
+                } catch (TooLargeException e) {
+                    tooLarge = true;
+                    break;
+                }
+                if (example == null) {
+                    break;
+                }
+                example = example.trim();
+                if (example.isEmpty()) {
+                    continue;
+                }
+                line++;
+                final Pending pending = new Pending(line);
+                if (!SudokuSolver.checkExample(example)) {
+                    pending.result = new Result(Status.INVALID, null, -1);
+                } else {
+                    final int[] nodes = SudokuSolver.prepare(example);
+                    while (pending.future == null) {
+                        try {
+                            pending.future = workers.submit(() -> solve(nodes, limits));
+                        } catch (RejectedExecutionException e) {
+                            if (out == null && window.isEmpty()) {
+                                reject(exchange);
+                                return;
+                            }
+                            if (window.isEmpty()) {
+                                // Очередь занята другими запросами - ждем, не дольше срока
+                                if (System.nanoTime() >= deadline) {
+                                    pending.result = new Result(Status.TIMEOUT, null, -1);
+                                    break;
+                                }
+                                sleepBriefly();
+                            } else {
+                                out = write(exchange, out, window.poll(), cancelled, deadline);
+                            }
+                        }
+                    }
+                }
+                window.add(pending);
+            }
+            if (tooLarge && out == null) {
+                // Ответ еще не начат: весь запрос отклоняется
+                cancelled.set(true);
+                for (Pending pending : window) {
+                    if (pending.future != null) {
+                        pending.future.cancel(false);
+                    }
+                }
+                tooLarge(exchange);
+                return;
+            }
+            while (!window.isEmpty()) {
+                out = write(exchange, out, window.poll(), cancelled, deadline);
+            }
+            if (tooLarge) {
+                // Ответ уже начат: готовые примеры отправлены, остаток тела не читается
+                final Pending rest = new Pending(line + 1);
+                rest.result = new Result(Status.TOO_LARGE, null, -1);
+                out = write(exchange, out, rest, cancelled, deadline);
+            }
+            if (out == null) {
+                respond(exchange, 200, NDJSON, "");
+            } else {
+                out.flush();
+            }
+        } finally {
+            requestLatency.record(System.nanoTime() - start);
+            exchange.close();
+        }
+    }
+
+    private Writer write(HttpExchange exchange, Writer out, Pending pending, AtomicBoolean cancelled, long deadline)
+            throws IOException {
+        final Result result = pending.result != null ? pending.result : await(pending.future, cancelled, deadline);
+        puzzles[result.status.ordinal()].increment();
+        if (out == null) {
+            exchange.getResponseHeaders().set("Content-Type", NDJSON);
+            exchange.sendResponseHeaders(200, 0);
+            out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8);
+        }
+        out.write(json(result.status, result.solution, pending.line, result.micros));
+        out.write('\n');
+        return out;
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            final StringBuilder text = new StringBuilder(2048);
+            counter(text, "sudoku_requests_total", "endpoint=\"solve\"", solveRequests.sum());
+            counter(text, "sudoku_requests_total", "endpoint=\"batch\"", batchRequests.sum());
+            long finished = 0;
+            for (Status status : Status.values()) {
+                final long count = puzzles[status.ordinal()].sum();
+                counter(text, "sudoku_puzzles_total", "status=\"" + status.label() + "\"", count);
+                if (status != Status.REJECTED) {
+                    finished += count;
+                }
+            }
+            final double seconds = (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            text.append("sudoku_throughput_puzzles_per_second ").append(finished / seconds).append('\n');
+            text.append("sudoku_queue_size ").append(workers.getQueue().size()).append('\n');
+            text.append("sudoku_active_workers ").append(workers.getActiveCount()).append('\n');
+            if (solver instanceof CachingSolver) {
+                final CachingSolver cache = (CachingSolver) solver;
+                counter(text, "sudoku_cache_total", "result=\"hit\"", cache.hits());
+                counter(text, "sudoku_cache_total", "result=\"miss\"", cache.misses());
+                counter(text, "sudoku_cache_total", "result=\"bypass\"", cache.bypassed());
+                text.append("sudoku_cache_evictions_total ").append(cache.evictions()).append('\n');
+                text.append("sudoku_cache_size ").append(cache.size()).append('\n');
+            }
+            histogram(text, "sudoku_solve_latency_micros", solveLatency);
+            histogram(text, "sudoku_request_latency_micros", requestLatency);
+            respond(exchange, 200, TEXT, text.toString());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Result solve(int[] nodes, SolveLimits limits) {
+        if (limits.check() != null) {
+            return new Result(Status.TIMEOUT, null, -1);
+        }
+        final long start = System.nanoTime();
+        final SolveResult result = solver.solve(nodes, limits);
+        final long elapsed = System.nanoTime() - start;
+        solveLatency.record(elapsed);
+        final Status status = result.isSolved() ? Status.SOLVED
+                : result.status().isInterrupted() ? Status.TIMEOUT : Status.NOT_FOUND;
+        return new Result(status, result.solution(), TimeUnit.NANOSECONDS.toMicros(elapsed));
+    }
+
+    /**
+     * Ждет результат до срока. По истечении срока прерывает перебор всех примеров запроса
+     */
+    private static Result await(Future<Result> future, AtomicBoolean cancelled, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | CancellationException e) {
+            cancelled.set(true);
+            future.cancel(false);
+            return new Result(Status.TIMEOUT, null, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled.set(true);
+            return new Result(Status.TIMEOUT, null, -1);
+        } catch (ExecutionException e) {
+            return new Result(Status.ERROR, null, -1);
+        }
+    }
+
+    private long deadlineNanos(HttpExchange exchange) {
+        final String header = exchange.getRequestHeaders().getFirst(DEADLINE_HEADER);
+        long millis = deadlineMillis;
+        if (header != null) {
+            try {
+                millis = Math.max(1, Long.parseLong(header.trim()));
+            } catch (NumberFormatException e) {
+                // Некорректный заголовок - срок по умолчанию
+            }
+        }
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    private void tooLarge(HttpExchange exchange) throws IOException {
+        puzzles[Status.TOO_LARGE.ordinal()].increment();
+        respond(exchange, 413, JSON, json(Status.TOO_LARGE, null, -1, -1));
+    }
+
+    /**
+     * @return Content-Length запроса или -1
+     */
+    private static long contentLength(HttpExchange exchange) {
+        final String header = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (header != null) {
+            try {
+                return Long.parseLong(header.trim());
+            } catch (NumberFormatException e) {
+                // Без длины - тело ограничивается при чтении
+            }
+        }
+        return -1;
+    }
+
+    private void reject(HttpExchange exchange) throws IOException {
+        puzzles[Status.REJECTED.ordinal()].increment();
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respond(exchange, 503, JSON, json(Status.REJECTED, null, -1, -1));
+    }
+
+    private static void sleepBriefly() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String json(Status status, int[] solution, long line, long micros) {
+        final StringBuilder json = new StringBuilder(128).append('{');
+        if (line >= 0) {
+            json.append("\"line\":").append(line).append(',');
+        }
+        json.append("\"status\":\"").append(status.label()).append('"');
+        if (status == Status.ERROR) {
+            json.append(",\"error\":\"Solver failed\"");
+        }
+        if (solution != null) {
+            json.append(",\"solution\":\"").append(SudokuSolver.toString(solution)).append('"');
+        }
+        if (micros >= 0) {
+            json.append(",\"micros\":").append(micros);
+        }
+        return json.append('}').toString();
+    }
+
+    private static void counter(StringBuilder text, String name, String labels, long value) {
+        text.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static void histogram(StringBuilder text, String name, LatencyHistogram histogram) {
+        for (long bound : HISTOGRAM_BOUNDS) {
+            counter(text, name + "_bucket", "le=\"" + bound + "\"", histogram.countAtMost(bound));
+        }
+        counter(text, name + "_bucket", "le=\"+Inf\"", histogram.count());
+        text.append(name).append("_sum ").append(histogram.sum()).append('\n');
+        text.append(name).append("_count ").append(histogram.count()).append('\n');
+        for (double quantile : new double[]{50, 90, 99, 99.9}) {
+            counter(text, name, "quantile=\"" + quantile / 100 + "\"", histogram.percentile(quantile));
+        }
+        text.append(name).append("_max ").append(histogram.max()).append('\n');
+    }
+
+    private static String queryParameter(URI uri, String name) {
+        final String query = uri.getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name + "=")) {
+                return parameter.substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return тело запроса или null, если оно длиннее limit байт
+     */
+    private static String readBody(HttpExchange exchange, int limit) throws IOException {
+        if (contentLength(exchange) > limit) {
+            return null;
+        }
+        final StringBuilder body = new StringBuilder(128);
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new LimitedInputStream(exchange.getRequestBody(), limit), StandardCharsets.US_ASCII));
+        final char[] buffer = new char[256];
+        int read;
+        try {
+            while ((read = reader.read(buffer)) > 0) {
+                body.append(buffer, 0, read);
+            }
+        } catch (TooLargeException e) {
+            return null;
+        }
+        return body.toString();
+    }
+
+    /**
+     * Строка тела без '\n'
+     * @return строка или null в конце тела
+     * @throws TooLargeException если строка длиннее {@link #MAX_LINE_LENGTH} или тело длиннее предела
+     */
+    private static String readLine(BufferedReader reader, StringBuilder buffer) throws IOException {
+        buffer.setLength(0);
+        int c;
+        while ((c = reader.read()) >= 0 && c != '\n') {
+            if (buffer.length() == MAX_LINE_LENGTH) {
+                throw new TooLargeException();
+            }
+            buffer.append((char) c);
+        }
+        return c < 0 && buffer.length() == 0 ? null : buffer.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int code, String contentType, String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(code, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private static final class Result {
+        final Status status;
+        final int[] solution;
+        final long micros;
+
+        Result(Status status, int[] solution, long micros) {
+            this.status = status;
+            this.solution = solution;
+            this.micros = micros;
+        }
+    }
+
+    /**
+     * Тело запроса или строка пакета длиннее предела
+     */
+    private static final class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        TooLargeException() {
+            super("Request body too large");
+        }
+    }
+
+    /**
+     * Поток тела запроса, который бросает {@link TooLargeException}, если прочитано больше limit байт
+     */
+    private static final class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = super.read();
+            if (b >= 0 && --remaining < 0) {
+                throw new TooLargeException();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            final int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                remaining -= read;
+                if (remaining < 0) {
+                    throw new TooLargeException();
+                }
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Пример пакета в порядке входа: либо уже готовый результат, либо задача в пуле
+     */
+    private static final class Pending {
+        final long line;
+        Future<Result> future;
+        Result result;
+
+        Pending(long line) {
+            this.line = line;
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package ru.ggershevich;
+
+/**
+ * Сеанс редактирования одного примера: игрок ставит и стирает цифры по одной, после каждого изменения нужны
+ * конфликты, подсказка или ответ на вопрос "решается ли еще".
+ * <p>
+ * Сеанс хранит окраску вершин, количество каждого цвета в каждой строке, колонке и квадрате (из них за O(1)
+ * получаются доступные цвета вершины и конфликты) и последний результат перебора. Перебор повторяется только
+ * когда прежний результат ничего не говорит о текущей окраске:
+ * <ul>
+ * <li>найденное решение подходит, пока каждая окрашенная вершина совпадает с ним, - стирание и ввод верных цифр
+ * его не меняют;</li>
+ * <li>доказанное отсутствие решения остается в силе, пока окрашены все вершины, окрашенные при доказательстве, -
+ * новые цифры задачу только ограничивают.</li>
+ * </ul>
+ * Обе проверки поддерживаются счетчиками при каждом изменении. Сеанс не потокобезопасен.
+ */
+public final class SolverSession {
+    /**
+     * Строка, колонка и квадрат
+     */
+    private static final int UNITS_PER_NODE = 3;
+
+    private final Board board;
+    private final ColoringSolver solver;
+    private final int[] nodes;
+    /**
+     * Количество вершин цвета в строке, колонке или квадрате: [unit * (size + 1) + color], units из {@link Board#units}
+     */
+    private final int[] unitColorCount;
+    /**
+     * Сколько раз цвет повторяется в строках, колонках и квадратах сверх одного
+     */
+    private int conflicts;
+
+    /**
+     * Последнее найденное решение и количество окрашенных вершин, которые с ним не совпадают
+     */
+    private int[] solution;
+    private int solutionMismatches;
+    /**
+     * Окраска, для которой доказано отсутствие решения, и количество ее окрашенных вершин, которые сейчас
+     * окрашены иначе или не окрашены
+     */
+    private int[] unsolvable;
+    private int unsolvableMissing;
+    private long searches;
+
+    /**
+     * @param example строка в формате {@link Board#parse(String)} для поля 9 x 9
+     */
+    public SolverSession(String example) {
+        this(new ColoringSolver(), Board.standard().parse(example));
+    }
+
+    /**
+     * @param solver алгоритм для перебора, поле - из его настроек
+     * @param nodes начальная окраска вершин, копируется
+     */
+    public SolverSession(ColoringSolver solver, int[] nodes) {
+        if (solver == null) {
+            throw new IllegalArgumentException("Solver must not be null");
+        }
+        this.board = solver.config().board();
+        if (nodes == null || nodes.length != board.cells) {
+            throw new IllegalArgumentException("Example must have " + board.cells + " nodes");
+        }
+        this.solver = solver;
+        this.nodes = new int[board.cells];
+        this.unitColorCount = new int[board.units.length * (board.size + 1)];
+        for (int node = 0; node < nodes.length; node++) {
+            if (nodes[node] != 0) {
+                set(node, nodes[node]);
+            }
+        }
+    }
+
+    public Board board() {
+        return board;
+    }
+
+    /**
+     * @return цвет вершины, 0 для неокрашенной
+     */
+    public int get(int node) {
+        return nodes[checkNode(node)];
+    }
+
+    /**
+     * Окрашивает вершину, прежний цвет заменяется. Перебор не выполняется
+     * @param color от 1 до {@link Board#size()}, 0 - стереть
+     */
+    public void set(int node, int color) {
+        checkNode(node);
+        if (color < 0 || color > board.size) {
+            throw new IllegalArgumentException("Color must be between 0 and " + board.size);
+        }
+        final int previous = nodes[node];
+        if (previous == color) {
+            return;
+        }
+        if (previous != 0) {
+            count(node, previous, -1);
+        }
+        nodes[node] = color;
+        if (color != 0) {
+            count(node, color, 1);
+        }
+        if (solution != null) {
+            solutionMismatches += mismatch(solution[node], color) - mismatch(solution[node], previous);
+        }
+        if (unsolvable != null && unsolvable[node] != 0) {
+            unsolvableMissing += (unsolvable[node] != color ? 1 : 0) - (unsolvable[node] != previous ? 1 : 0);
+        }
+    }
+
+    public void clear(int node) {
+        set(node, 0);
+    }
+
+    /**
+     * @return 1, если окрашенная вершина не совпадает с решением
+     */
+    private static int mismatch(int solved, int color) {
+        return color != 0 && color != solved ? 1 : 0;
+    }
+
+    private void count(int node, int color, int delta) {
+        for (int kind = 0; kind < UNITS_PER_NODE; kind++) {
+            final int index = unit(node, kind) * (board.size + 1) + color;
+            final int before = unitColorCount[index];
+            unitColorCount[index] = before + delta;
+            conflicts += Math.max(0, before + delta - 1) - Math.max(0, before - 1);
+        }
+    }
+
+    /**
+     * @param kind 0 - строка, 1 - колонка, 2 - квадрат
+     * @return номер строки, колонки или квадрата вершины в {@link Board#units}
+     */
+    private int unit(int node, int kind) {
+        switch (kind) {
+            case 0:
+                return board.rowOf[node];
+            case 1:
+                return board.size + board.columnOf[node];
+            default:
+                return 2 * board.size + board.boxOf[node];
+        }
+    }
+
+    /**
+     * @return true, если в какой-то строке, колонке или квадрате цвет повторяется
+     */
+    public boolean hasConflicts() {
+        return conflicts > 0;
+    }
+
+    /**
+     * @return true, если цвет вершины повторяется в ее строке, колонке или квадрате
+     */
+    public boolean isConflict(int node) {
+        final int color = nodes[checkNode(node)];
+        if (color == 0) {
+            return false;
+        }
+        for (int kind = 0; kind < UNITS_PER_NODE; kind++) {
+            if (unitColorCount[unit(node, kind) * (board.size + 1) + color] > 1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return маска цветов, которых нет у соседей вершины (бит color - 1), без учета ее собственного цвета
+     */
+    public int candidates(int node) {
+        checkNode(node);
+        int used = 0;
+        for (int kind = 0; kind < UNITS_PER_NODE; kind++) {
+            final int offset = unit(node, kind) * (board.size + 1);
+            for (int color = 1; color <= board.size; color++) {
+                final int own = nodes[node] == color ? 1 : 0;
+                if (unitColorCount[offset + color] > own) {
+                    used |= Board.colorBit(color);
+                }
+            }
+        }
+        return board.allColors & ~used;
+    }
+
+    /**
+     * @return true, если текущую окраску можно дополнить до решения. Перебор - только если прежний результат
+     * к ней не применим
+     */
+    public boolean isSolvable() {
+        return currentSolution() != null;
+    }
+
+    /**
+     * @return решение, продолжающее текущую окраску, или null
+     */
+    public int[] solution() {
+        final int[] current = currentSolution();
+        return current != null ? current.clone() : null;
+    }
+
+    /**
+     * @return неокрашенная вершина для подсказки - с наименьшим количеством доступных цветов, цвет берется из
+     * {@link #solution()}; -1, если решения нет или все вершины окрашены
+     */
+    public int hint() {
+        if (currentSolution() == null) {
+            return -1;
+        }
+        int best = -1;
+        int bestWidth = Integer.MAX_VALUE;
+        for (int node = 0; node < board.cells; node++) {
+            if (nodes[node] == 0) {
+                final int width = Integer.bitCount(candidates(node));
+                if (width < bestWidth) {
+                    best = node;
+                    bestWidth = width;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return сколько раз в сеансе выполнялся перебор
+     */
+    public long searches() {
+        return searches;
+    }
+
+    private int[] currentSolution() {
+        if (conflicts > 0) {
+            return null;
+        }
+        if (solution != null && solutionMismatches == 0) {
+            return solution;
+        }
+        if (unsolvable != null && unsolvableMissing == 0) {
+            return null;
+        }
+        searches++;
+        final int[] found = solver.solve(nodes);
+        if (found != null) {
+            solution = found;
+            solutionMismatches = 0;
+        } else {
+            unsolvable = nodes.clone();
+            unsolvableMissing = 0;
+        }
+        return found;
+    }
+
+    private int checkNode(int node) {
+        if (node < 0 || node >= board.cells) {
+            throw new IllegalArgumentException("Node must be between 0 and " + (board.cells - 1));
+        }
+        return node;
+    }
+
+    /**
+     * @return текущая окраска в формате {@link Board#parse(String)}
+     */
+    @Override
+    public String toString() {
+        return board.toString(nodes);
+    }
+}
@@ -1,58 +1,33 @@
 package ru.ggershevich;
 
-import java.util.Arrays;
-import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
 
 public class SudokuSolver {
 
+    /**
+     * Таблицы обычного поля 9 x 9, см. {@link Board}
+     */
     static final int NUM_OF_NODES = 81;
-    private static final int NODES_IN_ROW = 9;
-    private static final int NODES_IN_COLUMN = 9;
-    private static final int BOXES_IN_ROW = 3;
-    private static final int BOXES_IN_COLUMN = 3;
-
-    private static long usedCombination = 0;
-    private static boolean nakedSinglesOptimizationEnabled = true;
 
-    private static final BitSet[] adjacency = new BitSet[NUM_OF_NODES];
-    private static final BitSet[] adjacencyRow = new BitSet[NUM_OF_NODES];
-    private static final BitSet[] adjacencyCol = new BitSet[NUM_OF_NODES];
-    private static final BitSet[] adjacencyBox = new BitSet[NUM_OF_NODES];
-
-    static {
-        // Подготовка списков смежности. Списки смежности записанные в индексах, могут быть подготовлены заранее и захардкожены.
-        // Однако в этой версии этого решено не делать для экономии времени на разработку
-        for (int nodeIndex = 0; nodeIndex < NUM_OF_NODES; nodeIndex++) {
-            int adjacent = 0;
-            adjacency[nodeIndex] = new BitSet(NUM_OF_NODES);
-            adjacencyRow[nodeIndex] = new BitSet(NUM_OF_NODES);
-            adjacencyCol[nodeIndex] = new BitSet(NUM_OF_NODES);
-            adjacencyBox[nodeIndex] = new BitSet(NUM_OF_NODES);
-            for (int rowIndex = 0; rowIndex < NODES_IN_ROW; rowIndex++) {
-                for (int colIndex = 0; colIndex < NODES_IN_COLUMN; colIndex++) {
-                    final int nodeRow = nodeIndex / NODES_IN_ROW;
-                    final int nodeColumn = nodeIndex - nodeRow * NODES_IN_ROW;
-                    if (nodeRow == rowIndex && nodeColumn == colIndex) {
-                        continue;
-                    }
-                    if (nodeRow == rowIndex) {
-                        adjacency[nodeIndex].set(NODES_IN_ROW * rowIndex + colIndex);
-                        adjacencyRow[nodeIndex].set(NODES_IN_ROW * rowIndex + colIndex);
-                    }
-                    if (nodeColumn == colIndex) {
-                        adjacency[nodeIndex].set(NODES_IN_ROW * rowIndex + colIndex);
-                        adjacencyCol[nodeIndex].set(NODES_IN_ROW * rowIndex + colIndex);
-                    }
-                    if (boxIndex(nodeRow, nodeColumn) == boxIndex(rowIndex, colIndex)) {
-                        adjacency[nodeIndex].set(NODES_IN_ROW * rowIndex + colIndex);
-                        adjacencyBox[nodeIndex].set(NODES_IN_ROW * rowIndex + colIndex);
-                    }
-                }
-            }
-        }
-    }
+    /**
+     * Списки смежности в виде массивов индексов - для обхода соседей без поиска по битам
+     */
+    static final int[][] neighbours = Board.STANDARD.neighbours;
+    /**
+     * Номер строки, колонки и квадрата 3x3 для каждой вершины
+     */
+    static final int[] rowOf = Board.STANDARD.rowOf;
+    static final int[] columnOf = Board.STANDARD.columnOf;
+    static final int[] boxOf = Board.STANDARD.boxOf;
+    /**
+     * Строки (0-8), колонки (9-17) и квадраты (18-26), каждый - массив индексов вершин
+     */
+    static final int NUM_OF_UNITS = 27;
+    static final int[][] units = Board.STANDARD.units;
 
-    private static final int[] colorBitMap = {
+    static final int[] colorBitMap = {
             0b000000000,
             0b000000001,
             0b000000010,
@@ -65,9 +40,18 @@ public class SudokuSolver {
             0b100000000,
     };
 
-    private static int boxIndex(int row, int column) {
-        return BOXES_IN_ROW * (row / BOXES_IN_ROW) + (column / BOXES_IN_COLUMN);
-    }
+    static final int ALL_COLORS = 0b111111111;
+
+    /**
+     * Решатель для статических методов. Неизменяем и потокобезопасен, для других настроек -
+     * отдельный экземпляр {@link ColoringSolver}
+     */
+    private static final ColoringSolver DEFAULT = new ColoringSolver();
+    /**
+     * Решатели для {@link #solve(int[], Propagation)} по набору техник: наборов не больше 2^5, у каждого решателя
+     * свое переиспользуемое состояние перебора на поток
+     */
+    private static final ConcurrentMap<Propagation, ColoringSolver> BY_PROPAGATION = new ConcurrentHashMap<>();
 
     private SudokuSolver() {
     }
@@ -82,7 +66,7 @@ public class SudokuSolver {
         return exampleNodes;
     }
 
-    private static boolean checkExample(String example) {
+    static boolean checkExample(String example) {
         if (example == null || example.length() != NUM_OF_NODES) {
             return false;
         }
@@ -92,142 +76,91 @@ public class SudokuSolver {
     }
 
     public static int[] solve(int[] nodes) {
-        int[] possibleColors = new int[NUM_OF_NODES];
-
-        int[] colorFrequencies;
-        boolean repeat;
-        do {
-            repeat = false;
-            colorFrequencies = new int[colorBitMap.length];
-            for (int i = 0; i < nodes.length; i++) {
-                if (nodes[i] == 0) {
-                    possibleColors[i] = adjacentColorsBitsFor(i, nodes) ^ 0b111111111;
-                    // Если для неокрашенной вершины нет доступного цвета, значит задача не решаема
-                    if (possibleColors[i] == 0) {
-                        return null;
-                    }
-                    // Улучшение перебора. Если у вершины нет другого доступного цвета - окрасить ее сразу
-                    if (nakedSinglesOptimization(i, possibleColors, nodes)) {
-                        repeat = true;
-                        break;
-                    }
-
-                    // Сразу подкоректируем частоту с которой данный цвет встречается
-                    for (int color = 0; color < colorBitMap.length; color++) {
-                        if ((possibleColors[i] & colorBitMap[color]) > 0) {
-                            colorFrequencies[color]++;
-                        }
-                    }
-                }
-            }
-
-        } while (repeat);
-
-        boolean allColored = true;
-        for (int node : nodes) {
-            if (node == 0) {
-                allColored = false;
-            }
-        }
-        if (allColored) {
-            if (checkNodes(nodes)) {
-                return nodes;
-            } else {
-                return null;
-            }
-        }
-
-        // Выбираем самый редкий цввет
-        int minFrequency = 81;
-        int selectedColor = 0;
-        for (int i = 1; i < colorFrequencies.length; i++) {
-            // colorFrequencies[i] > 0 - цвета для которых нет доступного места уже расставлены и нас не интересуют
-            if (colorFrequencies[i] > 0 && colorFrequencies[i] < minFrequency) {
-                minFrequency = colorFrequencies[i];
-                selectedColor = i;
-            }
-        }
+        return DEFAULT.solve(nodes);
+    }
 
+    /**
+     * @param propagation техники исключения кандидатов, применяемые перед каждым ветвлением
+     */
+    public static int[] solve(int[] nodes, Propagation propagation) {
+        return BY_PROPAGATION.computeIfAbsent(propagation, ColoringSolver::new).solve(nodes);
+    }
 
-        // Найдем все вершины где этот цвет допустим
-        int selectedColorBit = colorBitMap[selectedColor];
-        BitSet nodesWhereSelectedColorPossible = new BitSet(NUM_OF_NODES);
-        for (int i = 0; i < possibleColors.length; i++) {
-            if ((possibleColors[i] & selectedColorBit) > 0) {
-                nodesWhereSelectedColorPossible.set(i);
-            }
-        }
+    /**
+     * @see ColoringSolver#solveWithStats(int[])
+     */
+    public static SolveResult solveWithStats(int[] nodes) {
+        return DEFAULT.solveWithStats(nodes);
+    }
 
+    /**
+     * @see ColoringSolver#countSolutions(int[], long)
+     */
+    public static long countSolutions(int[] nodes, long limit) {
+        return DEFAULT.countSolutions(nodes, limit);
+    }
 
-        // Найдем все вершины где этот цвет предустановлен
-        int powerOfCombination = 9;
-        for (int node : nodes) {
-            if (node == selectedColor) {
-                powerOfCombination--;
-            }
+    /**
+     * @param example строка из 81 символа 0-9. 0 означает что соответствующая ячейка не окрашена
+     * @see ColoringSolver#countSolutions(int[], long)
+     */
+    public static long countSolutions(String example, long limit) {
+        if (!checkExample(example)) {
+            throw new IllegalArgumentException("Example must be string of " + NUM_OF_NODES + " digits");
         }
+        return countSolutions(prepare(example), limit);
+    }
 
-        BitSet[] independentNodes = Utilities.getIndependentNodes(nodesWhereSelectedColorPossible, adjacency);
-        int[] combination = null;
-        do {
-            combination = Utilities.nextCombination(combination, independentNodes, powerOfCombination);
-            if (combination != null) {
-                int[] next = Arrays.copyOf(nodes, nodes.length);
-                for (int index : combination) {
-                    next[index] = selectedColor;
-                }
-
-                usedCombination++;
-
-                int[] solution = solve(next);
-                if (solution != null) {
-//                    System.out.println("Использованно комбинаций: " + usedCombination);
-                    return solution;
-                }
-            }
-        }
-        while (combination != null);
+    /**
+     * Параллельный подсчет решений в {@link ForkJoinPool#commonPool()}
+     * @see ColoringSolver#countSolutionsParallel(int[], long, ForkJoinPool)
+     */
+    public static long countSolutionsParallel(int[] nodes, long limit) {
+        return countSolutionsParallel(nodes, limit, ForkJoinPool.commonPool());
+    }
 
-        return null;
+    /**
+     * @see ColoringSolver#countSolutionsParallel(int[], long, ForkJoinPool)
+     */
+    public static long countSolutionsParallel(int[] nodes, long limit, ForkJoinPool pool) {
+        return DEFAULT.countSolutionsParallel(nodes, limit, pool);
     }
 
-    private static boolean nakedSinglesOptimization(int i, int[] possibleColors, int[] nodes) {
-        if (nakedSinglesOptimizationEnabled && Integer.bitCount(possibleColors[i]) == 1) {
-            for (int color = 0; color < colorBitMap.length; color++) {
-                if ((possibleColors[i] & colorBitMap[color]) > 0) {
-                    nodes[i] = color;
-                }
-            }
-            return true;
-        }
-        return false;
+    /**
+     * @return true, если у примера ровно одно решение
+     */
+    public static boolean isUnique(int[] nodes) {
+        return DEFAULT.isUnique(nodes);
     }
 
-    private static boolean checkNodes(int[] nodes) {
-        for (int i = 0; i < nodes.length; i++) {
+    /**
+     * @param example строка из 81 символа 0-9. 0 означает что соответствующая ячейка не окрашена
+     * @return true, если у примера ровно одно решение
+     */
+    public static boolean isUnique(String example) {
+        return countSolutions(example, 2) == 1;
+    }
 
-            if (!checkNodeByAdjacency(nodes, i, adjacencyRow)
-                    || !checkNodeByAdjacency(nodes, i, adjacencyCol)
-                    || !checkNodeByAdjacency(nodes, i, adjacencyBox)
-            ) {
-                return false;
-            }
-        }
-        return true;
+    /**
+     * Параллельный поиск решения в {@link ForkJoinPool#commonPool()}
+     * @see #solveParallel(int[], ForkJoinPool)
+     */
+    public static int[] solveParallel(int[] nodes) {
+        return solveParallel(nodes, ForkJoinPool.commonPool());
     }
 
-    private static boolean checkNodeByAdjacency(int[] nodes, int i, BitSet bitSet[]) {
+    /**
+     * @see ColoringSolver#solveParallel(int[], ForkJoinPool)
+     */
+    public static int[] solveParallel(int[] nodes, ForkJoinPool pool) {
+        return DEFAULT.solveParallel(nodes, pool);
+    }
 
-        int sum = nodes[i];
-        int adjacentIndex = bitSet[i].nextSetBit(0);
-        while (adjacentIndex >= 0) {
-            sum += nodes[adjacentIndex];
-            adjacentIndex = bitSet[i].nextSetBit(++adjacentIndex);
-        }
-        if (sum == 45) {
-            return true;
-        }
-        return false;
+    /**
+     * @return true, если в каждой строке, колонке и квадрате есть все цвета
+     */
+    static boolean checkNodes(int[] nodes) {
+        return Board.STANDARD.isSolution(nodes);
     }
 
     /**
@@ -237,32 +170,25 @@ public class SudokuSolver {
         if (!checkExample(example)) {
             throw new IllegalArgumentException("Example must be string of " + NUM_OF_NODES + " digits");
         }
-        int[] solution = solve(prepare(example));
-
-        String result = "";
-        if (solution != null) {
-            for (int color : solution) {
-                result = result + color;
-            }
-        }
-
-        return result;
+        return toString(solve(prepare(example)));
     }
 
     /**
-     * Определяет массив цветов использованных соседями для выбранной вершины
-     * @param nodeIndex индекс вершины
-     * @return массив использованных цветов
+     * Параллельный вариант {@link #solve(String)}
+     * @param example строка из 81 символа 0-9. 0 означает что соответствующая ячейка не окрашена
      */
-    private static int adjacentColorsBitsFor(int nodeIndex, int[] nodes) {
-        int adjacentColors = 0;
-        int adjacentIndex = adjacency[nodeIndex].nextSetBit(0);
-        while (adjacentIndex >= 0) {
-            adjacentColors |= colorBitMap[nodes[adjacentIndex]];
-            adjacentIndex = adjacency[nodeIndex].nextSetBit(++adjacentIndex);
+    public static String solveParallel(String example) {
+        if (!checkExample(example)) {
+            throw new IllegalArgumentException("Example must be string of " + NUM_OF_NODES + " digits");
         }
+        return toString(solveParallel(prepare(example)));
+    }
 
-        return  adjacentColors;
+    /**
+     * @return решение строкой из 81 цифры или пустая строка для null
+     */
+    static String toString(int[] solution) {
+        return Board.STANDARD.toString(solution);
     }
 
 }
@@ -0,0 +1,248 @@
+package ru.ggershevich;
+
+import java.util.Arrays;
+
+import static ru.ggershevich.SudokuSolver.NUM_OF_NODES;
+
+/**
+ * Каноническая форма примера относительно преобразований, не меняющих судоку: перестановки цветов,
+ * перестановки полос (по 3 строки) и строк внутри полосы, стопок (по 3 колонки) и колонок внутри стопки, транспонирования.
+ * <p>
+ * Каноническая форма - наименьший в лексикографическом порядке массив окраски среди всех 2 * 1296 * 1296
+ * геометрических преобразований, в котором цвета перенумерованы в порядке первого появления (0 остается 0).
+ * Для каждого транспонирования и порядка колонок строки подбираются перебором с отсечением: строка, которая
+ * больше соответствующей строки лучшего найденного варианта, дальше не рассматривается.
+ * <p>
+ * Объект хранит найденное преобразование: {@link #apply(int[])} переводит массив окраски в каноническое
+ * пространство, {@link #invert(int[])} - обратно.
+ */
+final class Symmetry {
+    private static final int SIZE = 9;
+    private static final int MAX = SIZE + 1;
+    /**
+     * Предел количества сравнений строк. Обычному примеру хватает десятков тысяч, а на почти пустом
+     * поле равных вариантов миллионы - для таких примеров каноническая форма не ищется
+     */
+    static final long WORK_LIMIT = 1_000_000;
+    private static final int[][] PERMUTATIONS = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+    /**
+     * Все 6 * 6^3 = 1296 порядков строк (колонок), сохраняющих полосы (стопки)
+     */
+    private static final int[][] LINE_ORDERS = new int[PERMUTATIONS.length * PERMUTATIONS.length
+            * PERMUTATIONS.length * PERMUTATIONS.length][];
+
+    static {
+        int index = 0;
+        for (int[] bands : PERMUTATIONS) {
+            for (int[] first : PERMUTATIONS) {
+                for (int[] second : PERMUTATIONS) {
+                    for (int[] third : PERMUTATIONS) {
+                        final int[][] inBand = {first, second, third};
+                        final int[] order = new int[SIZE];
+                        for (int band = 0; band < 3; band++) {
+                            for (int line = 0; line < 3; line++) {
+                                order[band * 3 + line] = bands[band] * 3 + inBand[band][line];
+                            }
+                        }
+                        LINE_ORDERS[index++] = order;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Каноническая вершина k - это исходная вершина cellMap[k]
+     */
+    private final int[] cellMap = new int[NUM_OF_NODES];
+    /**
+     * Исходный цвет - канонический цвет и обратно
+     */
+    private final int[] digitMap = new int[MAX];
+    private final int[] inverseDigitMap = new int[MAX];
+    private final int[] canonical;
+
+    private Symmetry(int[] canonical) {
+        this.canonical = canonical;
+    }
+
+    /**
+     * @param nodes массив окраски вершин
+     * @return каноническая форма и преобразование, которое к ней приводит, или null, если перебор
+     * превысил {@link #WORK_LIMIT}
+     */
+    static Symmetry of(int[] nodes) {
+        return new Search(nodes).run();
+    }
+
+    /**
+     * @return массив окраски вершин в канонической форме, не копируется
+     */
+    int[] canonical() {
+        return canonical;
+    }
+
+    /**
+     * Переводит массив окраски (например, решение исходного примера) в каноническое пространство
+     */
+    int[] apply(int[] nodes) {
+        final int[] result = new int[NUM_OF_NODES];
+        for (int k = 0; k < NUM_OF_NODES; k++) {
+            result[k] = digitMap[nodes[cellMap[k]]];
+        }
+        return result;
+    }
+
+    /**
+     * Переводит массив окраски из канонического пространства обратно, например решение канонического примера
+     * в решение исходного
+     */
+    int[] invert(int[] nodes) {
+        final int[] result = new int[NUM_OF_NODES];
+        for (int k = 0; k < NUM_OF_NODES; k++) {
+            result[cellMap[k]] = inverseDigitMap[nodes[k]];
+        }
+        return result;
+    }
+
+    /**
+     * Перебор преобразований с отсечением
+     */
+    private static final class Search {
+        private final int[][] grids = new int[2][NUM_OF_NODES];
+        private final int[] best = new int[NUM_OF_NODES];
+        private final int[] row = new int[SIZE];
+        /**
+         * Нумерация цветов на каждом уровне перебора. labels[depth][0] - сколько цветов уже пронумеровано
+         */
+        private final int[][] labels = new int[SIZE + 1][MAX];
+        private final int[] rowOrder = new int[SIZE];
+
+        private int[] grid;
+        private int[] columnOrder;
+        private boolean transposed;
+
+        /**
+         * Количество сравнений строк
+         */
+        private long work;
+
+        private boolean bestTransposed;
+        private final int[] bestRowOrder = new int[SIZE];
+        private int[] bestColumnOrder;
+        private final int[] bestLabels = new int[MAX];
+
+        Search(int[] nodes) {
+            for (int r = 0; r < SIZE; r++) {
+                for (int c = 0; c < SIZE; c++) {
+                    grids[0][r * SIZE + c] = nodes[r * SIZE + c];
+                    grids[1][r * SIZE + c] = nodes[c * SIZE + r];
+                }
+            }
+            Arrays.fill(best, MAX);
+        }
+
+        Symmetry run() {
+            for (int t = 0; t < 2; t++) {
+                transposed = t == 1;
+                grid = grids[t];
+                for (int[] order : LINE_ORDERS) {
+                    columnOrder = order;
+                    rows(0, 0, 0, 0);
+                }
+            }
+
+            if (work > WORK_LIMIT) {
+                return null;
+            }
+            final Symmetry symmetry = new Symmetry(best.clone());
+            for (int i = 0; i < SIZE; i++) {
+                for (int j = 0; j < SIZE; j++) {
+                    symmetry.cellMap[i * SIZE + j] = bestTransposed
+                            ? bestColumnOrder[j] * SIZE + bestRowOrder[i]
+                            : bestRowOrder[i] * SIZE + bestColumnOrder[j];
+                }
+            }
+            // Цвета, которых нет в примере, нумеруются по порядку оставшимися номерами
+            int next = bestLabels[0];
+            for (int digit = 1; digit < MAX; digit++) {
+                symmetry.digitMap[digit] = bestLabels[digit] != 0 ? bestLabels[digit] : ++next;
+                symmetry.inverseDigitMap[symmetry.digitMap[digit]] = digit;
+            }
+            return symmetry;
+        }
+
+        /**
+         * Выбирает строку канонического уровня depth: на уровнях 0, 3, 6 - любую строку неиспользованной
+         * полосы, на остальных - неиспользованную строку текущей полосы
+         */
+        private void rows(int depth, int usedBands, int band, int usedRows) {
+            if (work > WORK_LIMIT) {
+                return;
+            }
+            if (depth == SIZE) {
+                // Сюда доходят только варианты, равные лучшему
+                bestTransposed = transposed;
+                System.arraycopy(rowOrder, 0, bestRowOrder, 0, SIZE);
+                bestColumnOrder = columnOrder;
+                System.arraycopy(labels[depth], 0, bestLabels, 0, MAX);
+                return;
+            }
+            if (depth % 3 == 0) {
+                for (int b = 0; b < 3; b++) {
+                    if ((usedBands & 1 << b) == 0) {
+                        for (int r = 0; r < 3; r++) {
+                            if (place(depth, b * 3 + r)) {
+                                rows(depth + 1, usedBands | 1 << b, b, 1 << r);
+                            }
+                        }
+                    }
+                }
+            } else {
+                for (int r = 0; r < 3; r++) {
+                    if ((usedRows & 1 << r) == 0 && place(depth, band * 3 + r)) {
+                        rows(depth + 1, usedBands, band, usedRows | 1 << r);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Ставит исходную строку source на канонический уровень depth и сравнивает с лучшим вариантом
+         * @return false, если вариант хуже лучшего и его нужно отсечь
+         */
+        private boolean place(int depth, int source) {
+            work++;
+            final int[] current = labels[depth + 1];
+            System.arraycopy(labels[depth], 0, current, 0, MAX);
+            boolean tight = true;
+            final int offset = depth * SIZE;
+            for (int j = 0; j < SIZE; j++) {
+                final int digit = grid[source * SIZE + columnOrder[j]];
+                int value = 0;
+                if (digit != 0) {
+                    if (current[digit] == 0) {
+                        current[digit] = ++current[0];
+                    }
+                    value = current[digit];
+                }
+                if (tight) {
+                    if (value > best[offset + j]) {
+                        return false;
+                    }
+                    if (value < best[offset + j]) {
+                        tight = false;
+                    }
+                }
+                row[j] = value;
+            }
+            if (!tight) {
+                // Новый лучший вариант: строка записывается, следующие строки будут заполнены глубже
+                System.arraycopy(row, 0, best, offset, SIZE);
+                Arrays.fill(best, offset + SIZE, NUM_OF_NODES, MAX);
+            }
+            rowOrder[depth] = source;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package ru.ggershevich;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static ru.ggershevich.SudokuSolver.NUM_OF_NODES;
+import static ru.ggershevich.SudokuSolver.colorBitMap;
+
+/**
+ * Решение наложением шаблонов (pattern overlay).
+ * <p>
+ * Алгоритм {@link SudokuSolver#solve(int[])} окрашивает за шаг все вершины одного цвета - независимое множество
+ * из 9 вершин, по одной в каждой строке, колонке и квадрате. Таких множеств (шаблонов) всего 46 656, поэтому их
+ * можно построить заранее. Шаблон хранится как битовая маска из двух long: вершины 0-63 и 64-80.
+ * <p>
+ * Для каждого цвета из всех шаблонов отбираются те, что содержат все вершины этого цвета и не содержат вершин,
+ * где цвет недоступен (после применения техник {@link Propagation}). Затем перебираются сочетания шаблонов
+ * разных цветов, которые не пересекаются - проверка пересечения это два побитовых И.
+ */
+public class TemplateSolver implements Solver {
+    static final int NUM_OF_TEMPLATES = 46_656;
+    private static final int NUM_OF_COLORS = colorBitMap.length - 1;
+
+    private final Propagation propagation;
+
+    /**
+     * Со всеми техниками исключения кандидатов
+     */
+    public TemplateSolver() {
+        this(Propagation.all());
+    }
+
+    /**
+     * @param propagation техники исключения кандидатов, применяемые перед отбором шаблонов
+     */
+    public TemplateSolver(Propagation propagation) {
+        if (propagation == null) {
+            throw new IllegalArgumentException("Propagation must not be null");
+        }
+        this.propagation = propagation;
+    }
+
+    /**
+     * Шаблоны строятся при первом обращении
+     */
+    private static final class Templates {
+        static final long[] LOW = new long[NUM_OF_TEMPLATES];
+        static final long[] HIGH = new long[NUM_OF_TEMPLATES];
+
+        static {
+            final int count = generate(0, 0, 0, 0L, 0L, 0);
+            if (count != NUM_OF_TEMPLATES) {
+                throw new IllegalStateException("Unexpected number of templates: " + count);
+            }
+        }
+
+        /**
+         * Ставит по вершине в каждую строку начиная с row так, чтобы колонки и квадраты не повторялись
+         * @return количество построенных шаблонов
+         */
+        private static int generate(int row, int usedColumns, int usedBoxes, long low, long high, int count) {
+            if (row == 9) {
+                LOW[count] = low;
+                HIGH[count] = high;
+                return count + 1;
+            }
+            for (int column = 0; column < 9; column++) {
+                final int box = 3 * (row / 3) + column / 3;
+                if ((usedColumns & (1 << column)) != 0 || (usedBoxes & (1 << box)) != 0) {
+                    continue;
+                }
+                final int node = row * 9 + column;
+                count = generate(row + 1, usedColumns | (1 << column), usedBoxes | (1 << box),
+                        node < Long.SIZE ? low | 1L << node : low,
+                        node < Long.SIZE ? high : high | 1L << (node - Long.SIZE),
+                        count);
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public int[] solve(int[] nodes) {
+        return solve(nodes, SolveLimits.none()).solution();
+    }
+
+    @Override
+    public int[] solve(int[] nodes, AtomicBoolean cancelled) {
+        return solve(nodes, cancelled != null ? SolveLimits.none().withCancellation(cancelled) : SolveLimits.none()).solution();
+    }
+
+    /**
+     * Комбинацией считается каждый выбранный шаблон. Бюджет и флаг проверяются перед каждым шаблоном,
+     * срок - раз в {@value SearchState#DEADLINE_CHECK_INTERVAL} шаблонов
+     * @throws IllegalArgumentException если в массиве не 81 вершина или цвет вне 0-9
+     */
+    @Override
+    public SolveResult solve(int[] nodes, SolveLimits limits) {
+        Board.STANDARD.check(nodes);
+        final long start = System.nanoTime();
+        final Search search = new Search(limits);
+        final int[] solution = solve(nodes, search);
+        final SolveResult.Status status = solution != null ? SolveResult.Status.SOLVED
+                : search.interruption != null ? search.interruption : SolveResult.Status.NO_SOLUTION;
+        return new SolveResult(status, solution,
+                new SolveStats(search.tried, search.maxDepth, 0, search.backtracks, System.nanoTime() - start));
+    }
+
+    private int[] solve(int[] nodes, Search search) {
+        final SearchState state = new SearchState(Board.STANDARD, nodes, propagation);
+        if (!state.reduce()) {
+            return null;
+        }
+
+        // Вершины, где цвет уже стоит (обязательные) и где он стоит или доступен (допустимые)
+        final long[] requiredLow = new long[colorBitMap.length];
+        final long[] requiredHigh = new long[colorBitMap.length];
+        final long[] allowedLow = new long[colorBitMap.length];
+        final long[] allowedHigh = new long[colorBitMap.length];
+        for (int node = 0; node < NUM_OF_NODES; node++) {
+            final long bit = 1L << (node % Long.SIZE);
+            final int colored = state.colorOf(node);
+            for (int color = 1; color <= NUM_OF_COLORS; color++) {
+                final boolean required = colored == color;
+                final boolean allowed = required || (state.candidates(node) & colorBitMap[color]) != 0;
+                if (node < Long.SIZE) {
+                    requiredLow[color] |= required ? bit : 0;
+                    allowedLow[color] |= allowed ? bit : 0;
+                } else {
+                    requiredHigh[color] |= required ? bit : 0;
+                    allowedHigh[color] |= allowed ? bit : 0;
+                }
+            }
+        }
+
+        final int[][] templates = new int[colorBitMap.length][];
+        final int[] sizes = new int[colorBitMap.length];
+        for (int color = 1; color <= NUM_OF_COLORS; color++) {
+            templates[color] = filter(allowedLow[color], allowedHigh[color], requiredLow[color], requiredHigh[color]);
+            sizes[color] = templates[color].length;
+            if (sizes[color] == 0) {
+                return null;
+            }
+        }
+
+        if (!narrow(templates, sizes)) {
+            return null;
+        }
+
+        // Сначала цвета с наименьшим количеством шаблонов
+        final int[] order = new int[NUM_OF_COLORS];
+        for (int i = 0; i < NUM_OF_COLORS; i++) {
+            order[i] = i + 1;
+        }
+        for (int i = 1; i < order.length; i++) {
+            for (int j = i; j > 0 && sizes[order[j]] < sizes[order[j - 1]]; j--) {
+                final int swap = order[j];
+                order[j] = order[j - 1];
+                order[j - 1] = swap;
+            }
+        }
+
+        final int[] chosen = new int[colorBitMap.length];
+        if (!search.run(0, 0L, 0L, order, templates, sizes, chosen)) {
+            return null;
+        }
+
+        final int[] solution = new int[NUM_OF_NODES];
+        for (int color = 1; color <= NUM_OF_COLORS; color++) {
+            final long low = Templates.LOW[chosen[color]];
+            final long high = Templates.HIGH[chosen[color]];
+            for (int node = 0; node < NUM_OF_NODES; node++) {
+                if (node < Long.SIZE ? (low & 1L << node) != 0 : (high & 1L << (node - Long.SIZE)) != 0) {
+                    solution[node] = color;
+                }
+            }
+        }
+        return solution;
+    }
+
+    /**
+     * @return номера шаблонов, которые содержат все обязательные вершины и только допустимые вершины
+     */
+    private static int[] filter(long allowedLow, long allowedHigh, long requiredLow, long requiredHigh) {
+        final long[] low = Templates.LOW;
+        final long[] high = Templates.HIGH;
+        int count = 0;
+        for (int t = 0; t < NUM_OF_TEMPLATES; t++) {
+            if (fits(low[t], high[t], allowedLow, allowedHigh, requiredLow, requiredHigh)) {
+                count++;
+            }
+        }
+        final int[] result = new int[count];
+        count = 0;
+        for (int t = 0; t < NUM_OF_TEMPLATES; t++) {
+            if (fits(low[t], high[t], allowedLow, allowedHigh, requiredLow, requiredHigh)) {
+                result[count++] = t;
+            }
+        }
+        return result;
+    }
+
+    private static boolean fits(long low, long high, long allowedLow, long allowedHigh, long requiredLow, long requiredHigh) {
+        return (low & ~allowedLow) == 0 && (high & ~allowedHigh) == 0
+                && (low & requiredLow) == requiredLow && (high & requiredHigh) == requiredHigh;
+    }
+
+    /**
+     * Сужает списки шаблонов, пока это возможно: вершина, которую покрывают шаблоны только одного цвета,
+     * становится для этого цвета обязательной; вершина, которую покрывают все шаблоны цвета, исключается
+     * из шаблонов остальных цветов
+     * @return false, если у какого-то цвета не осталось шаблонов или какую-то вершину не покрывает ни один цвет
+     */
+    private static boolean narrow(int[][] templates, int[] sizes) {
+        final long[] unionLow = new long[colorBitMap.length];
+        final long[] unionHigh = new long[colorBitMap.length];
+        final long[] commonLow = new long[colorBitMap.length];
+        final long[] commonHigh = new long[colorBitMap.length];
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int color = 1; color <= NUM_OF_COLORS; color++) {
+                unionLow[color] = 0;
+                unionHigh[color] = 0;
+                commonLow[color] = -1L;
+                commonHigh[color] = -1L;
+                for (int i = 0; i < sizes[color]; i++) {
+                    final int t = templates[color][i];
+                    unionLow[color] |= Templates.LOW[t];
+                    unionHigh[color] |= Templates.HIGH[t];
+                    commonLow[color] &= Templates.LOW[t];
+                    commonHigh[color] &= Templates.HIGH[t];
+                }
+            }
+
+            long onceLow = 0;
+            long onceHigh = 0;
+            long twiceLow = 0;
+            long twiceHigh = 0;
+            for (int color = 1; color <= NUM_OF_COLORS; color++) {
+                twiceLow |= onceLow & unionLow[color];
+                twiceHigh |= onceHigh & unionHigh[color];
+                onceLow |= unionLow[color];
+                onceHigh |= unionHigh[color];
+            }
+            // Вершины 0-80: в старшем long используются 17 бит
+            if (onceLow != -1L || onceHigh != (1L << (NUM_OF_NODES - Long.SIZE)) - 1) {
+                return false;
+            }
+
+            for (int color = 1; color <= NUM_OF_COLORS; color++) {
+                long requiredLow = unionLow[color] & ~twiceLow;
+                long requiredHigh = unionHigh[color] & ~twiceHigh;
+                long forbiddenLow = 0;
+                long forbiddenHigh = 0;
+                for (int other = 1; other <= NUM_OF_COLORS; other++) {
+                    if (other != color) {
+                        forbiddenLow |= commonLow[other];
+                        forbiddenHigh |= commonHigh[other];
+                    }
+                }
+                int size = 0;
+                for (int i = 0; i < sizes[color]; i++) {
+                    final int t = templates[color][i];
+                    if ((Templates.LOW[t] & forbiddenLow) == 0 && (Templates.HIGH[t] & forbiddenHigh) == 0
+                            && (Templates.LOW[t] & requiredLow) == requiredLow
+                            && (Templates.HIGH[t] & requiredHigh) == requiredHigh) {
+                        templates[color][size++] = t;
+                    }
+                }
+                if (size == 0) {
+                    return false;
+                }
+                if (size != sizes[color]) {
+                    sizes[color] = size;
+                    changed = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Перебор сочетаний непересекающихся шаблонов с проверкой ограничений одного решения
+     */
+    private static final class Search {
+        private final SolveLimits limits;
+        private SolveResult.Status interruption;
+        private long tried;
+        private long backtracks;
+        private int maxDepth;
+        /**
+         * Проверки ограничений - по одной на каждый просмотренный шаблон, в том числе отброшенный.
+         * Срок проверяется по ним, а не по {@link #tried}: принятых шаблонов может долго не быть
+         */
+        private long probes;
+
+        Search(SolveLimits limits) {
+            this.limits = limits;
+        }
+
+        /**
+         * После выбора шаблона проверяется, что у каждого следующего цвета остался хотя бы один шаблон,
+         * не пересекающийся с уже выбранными
+         */
+        boolean run(int level, long usedLow, long usedHigh, int[] order, int[][] templates, int[] sizes, int[] chosen) {
+            maxDepth = Math.max(maxDepth, level);
+            if (level == order.length) {
+                return true;
+            }
+            final int color = order[level];
+            final int[] list = templates[color];
+            for (int i = 0; i < sizes[color] && !interrupted(); i++) {
+                final int t = list[i];
+                if ((Templates.LOW[t] & usedLow) != 0 || (Templates.HIGH[t] & usedHigh) != 0) {
+                    continue;
+                }
+                final long nextLow = usedLow | Templates.LOW[t];
+                final long nextHigh = usedHigh | Templates.HIGH[t];
+                if (!hasCompatible(level + 1, nextLow, nextHigh, order, templates, sizes)) {
+                    continue;
+                }
+                tried++;
+                chosen[color] = t;
+                if (run(level + 1, nextLow, nextHigh, order, templates, sizes, chosen)) {
+                    return true;
+                }
+                backtracks++;
+            }
+            return false;
+        }
+
+        private boolean interrupted() {
+            if (interruption == null) {
+                if (tried >= limits.combinationBudget()) {
+                    interruption = SolveResult.Status.BUDGET_EXCEEDED;
+                } else if (limits.isCancelled()) {
+                    interruption = SolveResult.Status.CANCELLED;
+                } else if ((probes++ & (SearchState.DEADLINE_CHECK_INTERVAL - 1)) == 0 && limits.isExpired()) {
+                    interruption = SolveResult.Status.TIMED_OUT;
+                }
+            }
+            return interruption != null;
+        }
+    }
+
+    private static boolean hasCompatible(int level, long usedLow, long usedHigh,
+                                         int[] order, int[][] templates, int[] sizes) {
+        for (int next = level; next < order.length; next++) {
+            final int color = order[next];
+            final int[] list = templates[color];
+            boolean found = false;
+            for (int i = 0; i < sizes[color] && !found; i++) {
+                found = (Templates.LOW[list[i]] & usedLow) == 0 && (Templates.HIGH[list[i]] & usedHigh) == 0;
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,76 @@
+package ru.ggershevich;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+
+public class BatchSolverTest {
+    private static final String EASY = "013800405024605000087000930490306000001000500000701093069000740000207680102008350";
+    private static final String EASY_SOLUTION = "613879425924635178587124936498356217731982564256741893869513742345297681172468359";
+    private static final String HARD = "002000041000082070000040009200079300010000080006810004100090000060430000850000400";
+    private static final String UNSOLVABLE = "113800405024605000087000930490306000001000500000701093069000740000207680102008350";
+
+    private static final String INPUT = HARD + "\r\n" + "\n" + EASY + "\n" + "12345\n" + UNSOLVABLE;
+
+    @Test
+    public void testOrderedFromStream() throws IOException {
+        List<String> lines = solve(new BatchSolver(2, true), INPUT);
+        assertEquals(lines.size(), 4);
+        assertEquals(lines.get(0), SudokuSolver.solve(HARD));
+        assertEquals(lines.get(1), EASY_SOLUTION);
+        assertEquals(lines.get(2), BatchSolver.INVALID);
+        assertEquals(lines.get(3), BatchSolver.NOT_FOUND);
+    }
+
+    @Test
+    public void testUnorderedFromFile() throws IOException {
+        Path file = Files.createTempFile("sudoku", ".txt");
+        try {
+            Files.write(file, INPUT.getBytes(StandardCharsets.US_ASCII));
+            BatchSolver batchSolver = new BatchSolver(2, false);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            batchSolver.solve(file, new PrintStream(out, true));
+
+            List<String> lines = Arrays.asList(out.toString().split("\\R"));
+            lines.sort(null);
+            assertEquals(lines, Arrays.asList(
+                    "1 " + SudokuSolver.solve(HARD),
+                    "2 " + EASY_SOLUTION,
+                    "3 " + BatchSolver.INVALID,
+                    "4 " + BatchSolver.NOT_FOUND));
+            assertEquals(batchSolver.latency().count(), 3);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test(description = "Исключение решателя на одном примере не прерывает пакет")
+    public void testSolverFailure() throws IOException {
+        final Solver failing = nodes -> {
+            if (nodes[2] == 2) {
+                throw new IllegalStateException("Solver failed");
+            }
+            return SudokuSolver.solve(nodes);
+        };
+        final BatchSolver batchSolver = new BatchSolver(2, true, failing);
+        final List<String> lines = solve(batchSolver, HARD + "\n" + EASY);
+        assertEquals(lines, Arrays.asList(BatchSolver.FAILED, EASY_SOLUTION));
+        assertEquals(batchSolver.failures(), 1);
+    }
+
+    private static List<String> solve(BatchSolver batchSolver, String input) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        batchSolver.solve(new ByteArrayInputStream(input.getBytes(StandardCharsets.US_ASCII)), new PrintStream(out, true));
+        return Arrays.asList(out.toString().split("\\R"));
+    }
+}
@@ -0,0 +1,117 @@
+package ru.ggershevich;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class BoardTest {
+
+    @DataProvider
+    public Object[][] corpus() throws IOException {
+        final List<Object[]> examples = new ArrayList<>();
+        for (int boxSize : new int[]{4, 5}) {
+            final String resource = "corpus" + boxSize * boxSize + ".txt";
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    getClass().getResourceAsStream(resource), StandardCharsets.US_ASCII))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        examples.add(new Object[]{boxSize, line});
+                    }
+                }
+            }
+        }
+        return examples.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "corpus", description = "Примеры 16 x 16 и 25 x 25")
+    public void testSolveLargeBoard(int boxSize, String example) {
+        final Board board = Board.of(boxSize);
+        final ColoringSolver solver = new ColoringSolver(SolverConfig.defaults().withBoard(board));
+        final int[] nodes = board.parse(example);
+
+        final int[] solution = solver.solve(nodes);
+        assertNotNull(solution);
+        assertTrue(board.isSolution(solution));
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i] != 0) {
+                assertEquals(solution[i], nodes[i]);
+            }
+        }
+        assertEquals(solver.solve(example), board.toString(solution));
+    }
+
+    @Test
+    public void testSmallestBoard() {
+        final Board board = Board.of(2);
+        final ColoringSolver solver = new ColoringSolver(SolverConfig.defaults().withBoard(board));
+        assertEquals(solver.countSolutions(new int[board.cells()], Long.MAX_VALUE), 288);
+    }
+
+    @Test
+    public void testStandardBoardTables() {
+        final Board board = Board.standard();
+        assertEquals(board.cells(), SudokuSolver.NUM_OF_NODES);
+        assertEquals(board.allColors, SudokuSolver.ALL_COLORS);
+        for (int color = 0; color <= board.size(); color++) {
+            assertEquals(Board.colorBit(color), SudokuSolver.colorBitMap[color]);
+        }
+        for (int node = 0; node < board.cells(); node++) {
+            assertEquals(board.neighbours[node].length, 20);
+        }
+        assertEquals(Board.of(5).neighbours[0].length, 24 + 24 + 16);
+    }
+
+    @Test
+    public void testParse() {
+        final Board board = Board.of(4);
+        final String example = "G.0123456789ABCDEF" + repeat('0', board.cells() - 18);
+        final int[] nodes = board.parse(example);
+        assertEquals(nodes[0], 16);
+        assertEquals(nodes[1], 0);
+        assertEquals(nodes[17], 15);
+        assertEquals(board.toString(nodes), example.replace('.', '0'));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testParseColorOutOfRange() {
+        Board.of(4).parse("H" + repeat('0', 255));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBoxSize() {
+        Board.of(6);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongNumberOfNodes() {
+        new ColoringSolver(SolverConfig.defaults().withBoard(Board.of(4))).solve(new int[SudokuSolver.NUM_OF_NODES]);
+    }
+
+    @Test
+    public void testIsSolution() {
+        final int[] solution = SudokuSolver.prepare("613879425924635178587124936498356217731982564256741893869513742345297681172468359");
+        assertTrue(Board.standard().isSolution(solution));
+        solution[0] = solution[1];
+        assertFalse(Board.standard().isSolution(solution));
+    }
+
+    private static String repeat(char c, int count) {
+        final StringBuilder result = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            result.append(c);
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package ru.ggershevich;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class BulkSolverTest {
+    private static final String EASY = "013800405024605000087000930490306000001000500000701093069000740000207680102008350";
+    private static final String EASY_SOLUTION = "613879425924635178587124936498356217731982564256741893869513742345297681172468359";
+    private static final String HARD = "002000041000082070000040009200079300010000080006810004100090000060430000850000400";
+    private static final String UNSOLVABLE = "113800405024605000087000930490306000001000500000701093069000740000207680102008350";
+
+    private static byte[] text(String... lines) {
+        return (String.join("\n", lines) + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] many(int copies) {
+        final String[] lines = new String[copies * 2];
+        for (int i = 0; i < copies; i++) {
+            lines[2 * i] = EASY;
+            lines[2 * i + 1] = HARD;
+        }
+        return text(lines);
+    }
+
+    @Test
+    public void testSolveStream() {
+        final BulkSolver solver = new BulkSolver();
+        final List<String> solutions = solver.solve(solver.puzzles(text(HARD, "", EASY, UNSOLVABLE)))
+                .map(result -> SudokuSolver.toString(result.solution()))
+                .collect(Collectors.toList());
+        assertEquals(solutions, Arrays.asList(SudokuSolver.solve(HARD), EASY_SOLUTION, ""));
+    }
+
+    @Test
+    public void testParallelKeepsOrder() {
+        final BulkSolver solver = new BulkSolver();
+        final byte[] input = many(20);
+        final List<String> sequential = solver.solve(solver.puzzles(input))
+                .map(result -> SudokuSolver.toString(result.solution())).collect(Collectors.toList());
+        final List<String> parallel = solver.solve(solver.puzzles(input).parallel())
+                .map(result -> SudokuSolver.toString(result.solution())).collect(Collectors.toList());
+        assertEquals(sequential.size(), 40);
+        assertEquals(parallel, sequential);
+    }
+
+    @Test
+    public void testSolveIterable() {
+        final List<int[]> puzzles = Arrays.asList(SudokuSolver.prepare(EASY), SudokuSolver.prepare(HARD));
+        final List<SolveResult> results = new BulkSolver(new DlxSolver()).solve(puzzles).collect(Collectors.toList());
+        assertEquals(SudokuSolver.toString(results.get(0).solution()), EASY_SOLUTION);
+        assertEquals(results.get(1).status(), SolveResult.Status.SOLVED);
+    }
+
+    @Test(description = "Части после деления начинаются с начала строки и вместе дают все примеры")
+    public void testSplitOnLineBoundaries() {
+        final BulkSolver solver = new BulkSolver();
+        final Spliterator<int[]> suffix = solver.puzzles(many(5)).spliterator();
+        assertEquals(suffix.estimateSize(), 10);
+        final Spliterator<int[]> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        final int[] count = new int[2];
+        prefix.forEachRemaining(nodes -> count[0]++);
+        suffix.forEachRemaining(nodes -> {
+            assertTrue(Arrays.equals(nodes, SudokuSolver.prepare(EASY)) || Arrays.equals(nodes, SudokuSolver.prepare(HARD)));
+            count[1]++;
+        });
+        assertEquals(count[0] + count[1], 10);
+        assertTrue(count[0] > 0 && count[1] > 0);
+
+        final Spliterator<int[]> single = solver.puzzles(text(EASY)).spliterator();
+        assertEquals(single.trySplit(), null);
+    }
+
+    @Test
+    public void testSolveAll() {
+        final BulkSolver solver = new BulkSolver();
+        final byte[] input = text(EASY, "", UNSOLVABLE + "\r", HARD);
+        final String expected = EASY_SOLUTION + "\n" + new String(new char[81]).replace('\0', '0') + "\n"
+                + SudokuSolver.solve(HARD) + "\n";
+        assertEquals(new String(solver.solveAll(input, false), StandardCharsets.US_ASCII), expected);
+        assertEquals(new String(solver.solveAll(input, true), StandardCharsets.US_ASCII), expected);
+    }
+
+    @Test
+    public void testLargeBoard() {
+        final Board board = Board.of(4);
+        final BulkSolver solver = new BulkSolver(new ColoringSolver(SolverConfig.defaults().withBoard(board)));
+        final byte[] output = solver.solveAll(text(new String(new char[256]).replace('\0', '0')), false);
+        assertEquals(output.length, 257);
+        final int[] solution = board.parse(output, 0, new int[256]);
+        assertTrue(board.isSolution(solution));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidLineInStream() {
+        final BulkSolver solver = new BulkSolver();
+        solver.solve(solver.puzzles(text(EASY, "12345"))).count();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidSymbol() {
+        new BulkSolver().solveAll(text(EASY.replace('3', 'x')), true);
+    }
+
+    @Test
+    public void testWriteRoundTrip() {
+        final Board board = Board.of(5);
+        final int[] nodes = new int[board.cells()];
+        for (int node = 0; node < nodes.length; node++) {
+            nodes[node] = node % 26;
+        }
+        final byte[] bytes = new byte[board.cells() + 3];
+        assertEquals(board.write(nodes, bytes, 3), board.cells() + 3);
+        assertEquals(board.parse(bytes, 3, new int[board.cells()]), nodes);
+        final char[] chars = new char[board.cells()];
+        assertEquals(board.write(nodes, chars, 0), board.cells());
+        assertEquals(new String(chars), board.toString(nodes));
+        assertEquals(board.parse(new String(chars)), nodes);
+    }
+}
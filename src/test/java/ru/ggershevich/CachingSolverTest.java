@@ -0,0 +1,184 @@
+package ru.ggershevich;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static ru.ggershevich.SudokuSolver.NUM_OF_NODES;
+import static ru.ggershevich.SudokuSolver.prepare;
+
+public class CachingSolverTest {
+    private static final String EXAMPLE = "013800405024605000087000930490306000001000500000701093069000740000207680102008350";
+    private static final String HARD_EXAMPLE = "002000041000082070000040009200079300010000080006810004100090000060430000850000400";
+    private static final String NO_SOLUTION = "113800405024605000087000930490306000001000500000701093069000740000207680102008350";
+
+    @Test(description = "Перенумерованный, переставленный и транспонированный пример находит решение двойника")
+    public void testEquivalentExamplesHit() {
+        final CountingSolver delegate = new CountingSolver();
+        final CachingSolver solver = new CachingSolver(delegate, 16, 0);
+
+        final int[] example = prepare(HARD_EXAMPLE);
+        assertEquals(solver.solve(example), SudokuSolver.solve(example));
+
+        for (int[] equivalent : new int[][]{
+                relabel(example),
+                swapRows(example, 0, 2),
+                swapRows(swapRows(swapRows(example, 0, 3), 1, 4), 2, 5),
+                transpose(example),
+                transpose(relabel(swapRows(example, 4, 5))),
+        }) {
+            final int[] solution = solver.solve(equivalent);
+            assertNotNull(solution);
+            assertEquals(solution, SudokuSolver.solve(equivalent));
+        }
+
+        assertEquals(delegate.calls.get(), 1);
+        assertEquals(solver.misses(), 1);
+        assertEquals(solver.hits(), 5);
+        // Двойник запоминается под своим ключом
+        assertEquals(solver.size(), 6);
+    }
+
+    @Test(description = "Повтор примера находится по точному совпадению")
+    public void testExactHit() {
+        final CountingSolver delegate = new CountingSolver();
+        final CachingSolver solver = new CachingSolver(delegate, 16);
+
+        final int[] example = prepare(EXAMPLE);
+        final int[] solution = solver.solve(example);
+        solution[0] = 0;
+        assertEquals(solver.solve(example), SudokuSolver.solve(example));
+        assertEquals(delegate.calls.get(), 1);
+        assertEquals(solver.hits(), 1);
+    }
+
+    @Test(description = "Двойник быстро решаемого примера не ищется: решить дешевле, чем найти каноническую форму")
+    public void testFastExampleNotCanonicalized() {
+        final CountingSolver delegate = new CountingSolver();
+        final CachingSolver solver = new CachingSolver(delegate, 16, Long.MAX_VALUE);
+
+        final int[] example = prepare(HARD_EXAMPLE);
+        solver.solve(example);
+        assertEquals(solver.solve(transpose(example)), SudokuSolver.solve(transpose(example)));
+        assertEquals(delegate.calls.get(), 2);
+        assertEquals(solver.misses(), 2);
+    }
+
+    @Test
+    public void testInvariant() {
+        final int[] example = prepare(HARD_EXAMPLE);
+        final long invariant = CachingSolver.invariant(example);
+        assertEquals(CachingSolver.invariant(transpose(relabel(swapRows(example, 0, 8)))), invariant);
+        assertFalse(CachingSolver.invariant(prepare(EXAMPLE)) == invariant);
+    }
+
+    @Test
+    public void testNoSolutionCached() {
+        final CountingSolver delegate = new CountingSolver();
+        final CachingSolver solver = new CachingSolver(delegate, 16, 0);
+
+        assertNull(solver.solve(prepare(NO_SOLUTION)));
+        assertNull(solver.solve(transpose(prepare(NO_SOLUTION))));
+        assertEquals(delegate.calls.get(), 1);
+        assertEquals(solver.hits(), 1);
+    }
+
+    @Test(description = "Вытесняется давно не использованный пример")
+    public void testEviction() {
+        final CountingSolver delegate = new CountingSolver();
+        final CachingSolver solver = new CachingSolver(delegate, 1);
+
+        solver.solve(prepare(EXAMPLE));
+        solver.solve(prepare(HARD_EXAMPLE));
+        assertEquals(solver.evictions(), 1);
+        assertEquals(solver.size(), 1);
+
+        solver.solve(prepare(EXAMPLE));
+        assertEquals(solver.misses(), 3);
+        assertEquals(delegate.calls.get(), 3);
+    }
+
+    @Test
+    public void testCancelledNotCached() {
+        // Прерванный перебор возвращает null, как и пример без решения
+        final CachingSolver solver = new CachingSolver(nodes -> null, 16);
+        assertNull(solver.solve(prepare(HARD_EXAMPLE), new AtomicBoolean(true)));
+        assertEquals(solver.size(), 0);
+    }
+
+    @Test(description = "Поле не 9 x 9 решается без кэша")
+    public void testBypass() {
+        final Board board = Board.of(4);
+        final CachingSolver solver = new CachingSolver(new ColoringSolver(SolverConfig.defaults().withBoard(board)), 16);
+        assertNotNull(solver.solve(new int[board.cells()]));
+        assertEquals(solver.bypassed(), 1);
+        assertEquals(solver.size(), 0);
+    }
+
+    @Test(description = "На пустом поле каноническая форма не находится, но повтор находится по точному совпадению")
+    public void testEmptyExample() {
+        final CountingSolver delegate = new CountingSolver();
+        final CachingSolver solver = new CachingSolver(delegate, 16, 0);
+        assertNotNull(solver.solve(new int[NUM_OF_NODES]));
+        assertNotNull(solver.solve(new int[NUM_OF_NODES]));
+        assertEquals(delegate.calls.get(), 1);
+        assertEquals(solver.hits(), 1);
+    }
+
+    @Test
+    public void testSymmetryRoundTrip() {
+        for (String example : new String[]{EXAMPLE, HARD_EXAMPLE}) {
+            final int[] nodes = prepare(example);
+            final Symmetry symmetry = Symmetry.of(nodes);
+            assertEquals(symmetry.apply(nodes), symmetry.canonical());
+            assertEquals(symmetry.invert(symmetry.canonical()), nodes);
+            assertEquals(Symmetry.of(transpose(relabel(nodes))).canonical(), symmetry.canonical());
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new CachingSolver(new ColoringSolver(), 0);
+    }
+
+    private static int[] relabel(int[] nodes) {
+        final int[] result = new int[NUM_OF_NODES];
+        for (int i = 0; i < NUM_OF_NODES; i++) {
+            result[i] = nodes[i] == 0 ? 0 : 10 - nodes[i];
+        }
+        return result;
+    }
+
+    private static int[] swapRows(int[] nodes, int first, int second) {
+        final int[] result = nodes.clone();
+        System.arraycopy(nodes, first * 9, result, second * 9, 9);
+        System.arraycopy(nodes, second * 9, result, first * 9, 9);
+        return result;
+    }
+
+    private static int[] transpose(int[] nodes) {
+        final int[] result = new int[NUM_OF_NODES];
+        for (int r = 0; r < 9; r++) {
+            for (int c = 0; c < 9; c++) {
+                result[c * 9 + r] = nodes[r * 9 + c];
+            }
+        }
+        return result;
+    }
+
+    private static class CountingSolver implements Solver {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final Solver delegate = new ColoringSolver();
+
+        @Override
+        public int[] solve(int[] nodes) {
+            calls.incrementAndGet();
+            return delegate.solve(nodes);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ru.ggershevich;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static ru.ggershevich.SudokuSolver.prepare;
+
+public class ColoringSolverTest {
+    private static final String[] EXAMPLES = {
+            "081790304000040016006103050000008640008904100049200000090605200870020000205017490",
+            "300000000050703008000028070700000043000000000003904105400300800100040000968000200",
+            "100000089000009002000000450007600000030040000900002005004070000500008010060300000",
+            "013800405024605000087000930490306000001000500000701093069000740000207680102008350",
+            "002000041000082070000040009200079300010000080006810004100090000060430000850000400",
+            "113800405024605000087000930490306000001000500000701093069000740000207680102008350",
+    };
+
+    @Test(description = "Один экземпляр из многих потоков дает те же ответы, что и последовательное решение")
+    public void testConcurrentSolves() throws Exception {
+        final ColoringSolver solver = new ColoringSolver();
+        final List<int[]> expected = new ArrayList<>();
+        for (String example : EXAMPLES) {
+            expected.add(new ColoringSolver().solve(prepare(example)));
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<int[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final String example = EXAMPLES[i % EXAMPLES.length];
+                futures.add(executor.submit(() -> solver.solve(prepare(example))));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                assertEquals(futures.get(i).get(), expected.get(i % EXAMPLES.length));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(description = "Состояние потока переиспользуется - статистика и окраска от прошлого решения не влияют")
+    public void testStateReuse() {
+        final ColoringSolver solver = new ColoringSolver();
+        final SolveStats first = solver.solveWithStats(prepare(EXAMPLES[2])).stats();
+        assertNull(solver.solve(prepare(EXAMPLES[5])));
+        final SolveStats second = solver.solveWithStats(prepare(EXAMPLES[2])).stats();
+        assertEquals(second.combinations(), first.combinations());
+        assertEquals(second.backtracks(), first.backtracks());
+    }
+
+    @Test
+    public void testConfig() {
+        final Propagation propagation = Propagation.of(Propagation.Technique.NAKED_SINGLES);
+        final SolverConfig config = SolverConfig.defaults().withPropagation(propagation);
+        final ColoringSolver solver = new ColoringSolver(config);
+        assertTrue(solver.config().propagation() == propagation);
+        assertEquals(solver.solve(prepare(EXAMPLES[2])), new ColoringSolver().solve(prepare(EXAMPLES[2])));
+        assertTrue(solver.eliminations(Propagation.Technique.NAKED_SINGLES) > 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNullPropagation() {
+        SolverConfig.defaults().withPropagation(null);
+    }
+
+    @Test(description = "Комбинация ветвления возвращается окрашенной и без противоречий, после перебора состояние прежнее")
+    public void testForwardCheckedCombinations() {
+        final int[] example = prepare(EXAMPLES[2]);
+        final SearchState state = new SearchState(Board.standard(), example,
+                Propagation.of(Propagation.Technique.NAKED_SINGLES), SolverConfig.Branching.COLOR);
+        assertEquals(state.branch(0), SearchState.Step.BRANCH);
+        final int[] before = state.nodes();
+        final int color = state.selectedColor(0);
+
+        int combinations = 0;
+        boolean first = true;
+        while (state.nextCombination(0, first)) {
+            first = false;
+            combinations++;
+            int placed = 0;
+            for (int node = 0; node < SudokuSolver.NUM_OF_NODES; node++) {
+                placed += state.colorOf(node) == color ? 1 : 0;
+                assertTrue(state.colorOf(node) != 0 || state.candidates(node) != 0);
+            }
+            assertEquals(placed, 9);
+            for (int node : state.combination(0)) {
+                assertEquals(state.colorOf(node), color);
+            }
+        }
+        assertTrue(combinations > 0);
+        assertEquals(state.nodes(), before);
+    }
+
+    @Test(description = "Адаптивное ветвление находит те же решения и перебирает меньше веток, чем ветвление по цвету")
+    public void testAdaptiveBranching() {
+        final SolverConfig color = SolverConfig.defaults().withBranching(SolverConfig.Branching.COLOR);
+        final ColoringSolver colorSolver = new ColoringSolver(color);
+        final ColoringSolver adaptiveSolver = new ColoringSolver(color.withBranching(SolverConfig.Branching.ADAPTIVE));
+        long colorCombinations = 0;
+        long adaptiveCombinations = 0;
+        for (String example : EXAMPLES) {
+            final SolveResult colorResult = colorSolver.solveWithStats(prepare(example));
+            final SolveResult adaptiveResult = adaptiveSolver.solveWithStats(prepare(example));
+            assertEquals(adaptiveResult.solution(), colorResult.solution());
+            colorCombinations += colorResult.stats().combinations();
+            adaptiveCombinations += adaptiveResult.stats().combinations();
+        }
+        assertTrue(adaptiveCombinations < colorCombinations);
+        assertEquals(adaptiveSolver.countSolutions(new int[SudokuSolver.NUM_OF_NODES], 50), 50);
+    }
+
+    @Test(description = "Ветвление по вершине: цвета вершины перебираются по одному, после перебора состояние прежнее")
+    public void testCellBranching() {
+        // В первой строке свободны вершины 7 и 8 с цветами 8 и 9: 2^8 веток против комбинаций цвета по 6-9 вершин в строке
+        final int[] example = new int[SudokuSolver.NUM_OF_NODES];
+        for (int node = 0; node < 7; node++) {
+            example[node] = node + 1;
+        }
+        final SearchState state = new SearchState(Board.standard(), example, Propagation.none(),
+                SolverConfig.Branching.ADAPTIVE);
+        assertEquals(state.branch(0), SearchState.Step.BRANCH);
+        assertEquals(state.powerOfCombination(0), 1);
+        assertEquals(state.combination(0), new int[]{7});
+        final int[] before = state.nodes();
+        final List<Integer> colors = new ArrayList<>();
+        boolean first = true;
+        while (state.nextCombination(0, first)) {
+            first = false;
+            assertEquals(state.colorOf(7), state.selectedColor(0));
+            colors.add(state.colorOf(7));
+        }
+        assertEquals(colors, Arrays.asList(8, 9));
+        assertEquals(state.nodes(), before);
+
+        final SearchState colorState = new SearchState(Board.standard(), example, Propagation.none(),
+                SolverConfig.Branching.COLOR);
+        assertEquals(colorState.branch(0), SearchState.Step.BRANCH);
+        assertEquals(colorState.powerOfCombination(0), 8);
+    }
+
+    @Test(description = "Параллельный перебор пустого поля не собирает все комбинации первого цвета")
+    public void testParallelEmptyBoard() {
+        final ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            final ColoringSolver solver = new ColoringSolver();
+            assertTrue(Board.standard().isSolution(solver.solveParallel(new int[SudokuSolver.NUM_OF_NODES], pool)));
+            assertEquals(solver.countSolutionsParallel(new int[SudokuSolver.NUM_OF_NODES], 1000, pool), 1000);
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
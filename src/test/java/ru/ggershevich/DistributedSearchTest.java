@@ -0,0 +1,170 @@
+package ru.ggershevich;
+
+import org.testng.annotations.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+public class DistributedSearchTest {
+    /**
+     * Пример 9 x 9 с первыми двумя строками без цифр: у него много решений
+     */
+    private static final String OPEN = "000000000000000000087000930490306000001000500000701093069000740000207680102008350";
+    private static final String UNSOLVABLE = "113800405024605000087000930490306000001000500000701093069000740000207680102008350";
+
+    private static final SolverConfig CONFIG = SolverConfig.defaults();
+
+    private static long localCount(String example) {
+        return SudokuSolver.countSolutions(example, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testSplitCoversAllSolutions() {
+        final int[] nodes = Board.standard().parse(OPEN);
+        final List<int[]> branches = DistributedSearch.split(CONFIG, nodes);
+        assertTrue(branches.size() > 1);
+        long sum = 0;
+        for (int[] branch : branches) {
+            sum += SudokuSolver.countSolutions(branch, Long.MAX_VALUE);
+        }
+        assertEquals(sum, localCount(OPEN));
+
+        assertEquals(DistributedSearch.split(CONFIG, Board.standard().parse(UNSOLVABLE)).size(), 0);
+        assertEquals(DistributedSearch.frontier(CONFIG, nodes, 50).stream()
+                .mapToLong(unit -> SudokuSolver.countSolutions(unit, Long.MAX_VALUE)).sum(), localCount(OPEN));
+    }
+
+    @Test(timeOut = 60_000)
+    public void testThreadWorkers() throws Exception {
+        try (DistributedSearch.Coordinator coordinator = new DistributedSearch.Coordinator(CONFIG, 0, 20)) {
+            final List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                final Thread worker = new Thread(() -> {
+                    try {
+                        DistributedSearch.Worker.run("localhost", coordinator.port());
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+            final int[] nodes = Board.standard().parse(OPEN);
+            // Маленький бюджет: тяжелые задания дробятся
+            final DistributedSearch.Result result = coordinator.count(nodes, Long.MAX_VALUE, 4);
+            assertEquals(result.count(), localCount(OPEN));
+            assertTrue(result.splits() > 0);
+
+            // Координатор переиспользуется для следующего подсчета
+            final DistributedSearch.Result solved = coordinator.count(new int[81], 1, 8);
+            assertEquals(solved.count(), 1);
+            assertNotNull(solved.solution());
+            assertTrue(Board.standard().isSolution(solved.solution()));
+
+            assertEquals(coordinator.count(Board.standard().parse(UNSOLVABLE), 1, 8).count(), 0);
+        }
+    }
+
+    @Test(timeOut = 120_000)
+    public void testWorkerProcesses() throws Exception {
+        final List<Process> workers = new ArrayList<>();
+        final DistributedSearch.Result result;
+        try (DistributedSearch.Coordinator coordinator = new DistributedSearch.Coordinator(CONFIG, 0, 1000)) {
+            for (int i = 0; i < 2; i++) {
+                workers.add(DistributedSearch.startWorker(coordinator.port()));
+            }
+            // Оба процесса должны подключиться до закрытия координатора
+            while (coordinator.workers() < 2) {
+                Thread.sleep(10);
+            }
+            result = coordinator.count(Board.standard().parse(OPEN), Long.MAX_VALUE, 8);
+        }
+        assertEquals(result.count(), localCount(OPEN));
+        for (Process worker : workers) {
+            assertTrue(worker.waitFor(30, TimeUnit.SECONDS));
+            assertEquals(worker.exitValue(), 0);
+        }
+    }
+
+    @Test(timeOut = 30_000, description = "Закрытие посреди счета не выдает частичный счет за полный")
+    public void testClosedMidJob() throws Exception {
+        final DistributedSearch.Coordinator coordinator = new DistributedSearch.Coordinator(CONFIG, 0, 20);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Исполнителей нет - счет ждет, пока координатор не закроют
+        final Thread counting = new Thread(() -> {
+            try {
+                coordinator.count(Board.standard().parse(OPEN), Long.MAX_VALUE, 4);
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        counting.start();
+        Thread.sleep(100);
+        coordinator.close();
+        counting.join();
+        assertTrue(failure.get() instanceof IllegalStateException);
+    }
+
+    @Test(timeOut = 30_000, description = "Закрытие отключает исполнителя, который не ответил на задание")
+    public void testCloseWhileWaitingForReply() throws Exception {
+        final DistributedSearch.Coordinator coordinator = new DistributedSearch.Coordinator(CONFIG, 0, 20);
+        final Thread counting = new Thread(() -> {
+            try {
+                coordinator.count(Board.standard().parse(OPEN), Long.MAX_VALUE, 4);
+            } catch (IllegalStateException e) {
+                // Координатор закрыт посреди счета
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        try (Socket worker = new Socket(InetAddress.getLoopbackAddress(), coordinator.port());
+             DataInputStream in = new DataInputStream(worker.getInputStream())) {
+            assertEquals(in.readInt(), DistributedSearch.MAGIC);
+            in.readInt();
+            in.readInt();
+            counting.start();
+            // Задание получено, ответа не будет
+            assertEquals(in.readByte(), 'U');
+            coordinator.close();
+            while (in.read() >= 0) {
+                // Остаток задания до конца потока
+            }
+        }
+        counting.join();
+        while (coordinator.workers() > 0) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test(timeOut = 30_000, description = "Координатор закрыл соединение после приветствия без 'S'")
+    public void testCoordinatorGone() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            final Thread coordinator = new Thread(() -> {
+                try (Socket socket = server.accept();
+                     DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+                    out.writeInt(DistributedSearch.MAGIC);
+                    out.writeInt(DistributedSearch.VERSION);
+                    out.writeInt(3);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            coordinator.start();
+            assertEquals(DistributedSearch.Worker.run("localhost", server.getLocalPort()), 0);
+            coordinator.join();
+        }
+    }
+}
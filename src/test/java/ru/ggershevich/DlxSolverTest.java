@@ -0,0 +1,80 @@
+package ru.ggershevich;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+import static ru.ggershevich.SudokuSolver.prepare;
+
+public class DlxSolverTest {
+
+    @DataProvider
+    public Object[][] examples() {
+        return new Object[][]{
+                {"081790304000040016006103050000008640008904100049200000090605200870020000205017490"},
+                {"300000000050703008000028070700000043000000000003904105400300800100040000968000200"},
+                {"100000089000009002000000450007600000030040000900002005004070000500008010060300000"},
+                {"013800405024605000087000930490306000001000500000701093069000740000207680102008350"},
+                {"002000041000082070000040009200079300010000080006810004100090000060430000850000400"},
+        };
+    }
+
+    @Test(dataProvider = "examples")
+    public void testSameSolutionAsColoring(String example) {
+        assertEquals(new DlxSolver().solve(prepare(example)), SudokuSolver.solve(prepare(example)));
+    }
+
+    @Test(description = "Матрица восстанавливается после каждого решения, поэтому экземпляр можно переиспользовать")
+    public void testReuse() {
+        final Solver solver = new DlxSolver();
+        for (Object[] example : examples()) {
+            assertNull(solver.solve(prepare("113800405024605000087000930490306000001000500000701093069000740000207680102008350")));
+            assertEquals(solver.solve((String) example[0]), SudokuSolver.solve((String) example[0]));
+        }
+    }
+
+    @Test(description = "Неверный пример отклоняется и не портит матрицу потока")
+    public void testInvalidExample() {
+        final Solver solver = new DlxSolver();
+        final int[] good = prepare((String) examples()[0][0]);
+        final int[] expected = solver.solve(good);
+        final int[] outOfRange = good.clone();
+        outOfRange[80] = 10;
+        for (int[] invalid : new int[][]{Arrays.copyOf(good, 40), outOfRange}) {
+            try {
+                solver.solve(invalid);
+                fail("Invalid example accepted");
+            } catch (IllegalArgumentException expectedException) {
+                // ожидаемо
+            }
+            assertEquals(solver.solve(good), expected);
+        }
+    }
+
+    @Test
+    public void testEmptyBoard() {
+        assertTrue(SudokuSolver.checkNodes(new DlxSolver().solve(new int[SudokuSolver.NUM_OF_NODES])));
+    }
+
+    @Test
+    public void testUnsolvable() {
+        // Противоречия в заданных вершинах нет, но вершину 2 окрасить нечем
+        assertNull(new DlxSolver().solve(prepare("120456789003000000000000000000000000000000000000000000000000000000000000000000000")));
+    }
+
+    @Test
+    public void testEngine() {
+        assertEquals(Engine.of("dlx"), Engine.DLX);
+        assertTrue(Engine.of("Template").solver() instanceof TemplateSolver);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownEngine() {
+        Engine.of("brute-force");
+    }
+}
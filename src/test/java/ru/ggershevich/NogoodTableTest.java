@@ -0,0 +1,78 @@
+package ru.ggershevich;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+import static ru.ggershevich.SudokuSolver.prepare;
+
+public class NogoodTableTest {
+    private static final String[] EXAMPLES = {
+            "400000805030000000000700000020000060000080400000010000000603070500200000104000000",
+            "100000089000009002000000450007600000030040000900002005004070000500008010060300000",
+            "800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+            "113800405024605000087000930490306000001000500000701093069000740000207680102008350",
+    };
+
+    @Test
+    public void testTable() {
+        final NogoodTable table = new NogoodTable(Board.standard(), 1000);
+        assertEquals(table.capacity(), 1024);
+        final int[] candidates = new int[SudokuSolver.NUM_OF_NODES];
+        candidates[5] = 0b11;
+        final long key = table.hash(candidates);
+        final long check = table.check();
+        assertFalse(table.contains(key, check));
+        table.add(key, check);
+        assertTrue(table.contains(key, check));
+
+        // Хеш зависит только от масок, а не от порядка их изменения
+        candidates[7] = 0b100;
+        assertNotEquals(table.hash(candidates), key);
+        // Изменение маски меняет хеши на XOR ключей измененных цветов
+        assertEquals(table.hash(candidates), key ^ table.indexKey(7, 0b100));
+        assertEquals(table.check(), check ^ table.checkKey(7, 0b100));
+        candidates[7] = 0;
+        assertEquals(table.hash(candidates), key);
+        assertEquals(table.check(), check);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        SolverConfig.defaults().withNogoodTable(-1);
+    }
+
+    @Test(description = "С таблицей тупиков те же ответы и меньше перебора")
+    public void testSolveWithTable() {
+        final SolverConfig config = SolverConfig.defaults().withPropagation(Propagation.of(Propagation.Technique.NAKED_SINGLES));
+        final ColoringSolver plain = new ColoringSolver(config);
+        final ColoringSolver withTable = new ColoringSolver(config.withNogoodTable(1 << 16));
+        long plainCombinations = 0;
+        long tableCombinations = 0;
+        long hits = 0;
+        for (String example : EXAMPLES) {
+            final SolveResult expected = plain.solveWithStats(prepare(example));
+            final SolveResult result = withTable.solveWithStats(prepare(example));
+            assertEquals(result.solution(), expected.solution());
+            plainCombinations += expected.stats().combinations();
+            tableCombinations += result.stats().combinations();
+            hits += result.stats().nogoodHits();
+            assertTrue(result.stats().nogoodLookups() >= result.stats().nogoodHits());
+        }
+        assertTrue(hits > 0);
+        assertTrue(tableCombinations < plainCombinations);
+        assertEquals(plain.solveWithStats(prepare(EXAMPLES[0])).stats().nogoodLookups(), 0);
+    }
+
+    @Test(description = "Подсчет решений не записывает ветки с решениями")
+    public void testCountWithTable() {
+        final ColoringSolver solver = new ColoringSolver(SolverConfig.defaults().withNogoodTable(1 << 16));
+        final int[] empty = new int[SudokuSolver.NUM_OF_NODES];
+        assertEquals(solver.countSolutions(empty, 500), 500);
+        assertEquals(solver.countSolutions(empty, 500), 500);
+        assertTrue(solver.isUnique(prepare(EXAMPLES[1])));
+        assertEquals(solver.countSolutions(prepare(EXAMPLES[3]), 2), 0);
+    }
+}
@@ -0,0 +1,143 @@
+package ru.ggershevich;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class PackedFormatTest {
+    private static final String EASY = "013800405024605000087000930490306000001000500000701093069000740000207680102008350";
+    private static final String EASY_SOLUTION = "613879425924635178587124936498356217731982564256741893869513742345297681172468359";
+    private static final String HARD = "002000041000082070000040009200079300010000080006810004100090000060430000850000400";
+
+    private Path text;
+    private Path packed;
+
+    @BeforeMethod
+    public void createFiles() throws IOException {
+        text = Files.createTempFile("sudoku", ".txt");
+        packed = Files.createTempFile("sudoku", ".bin");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(text);
+        Files.deleteIfExists(packed);
+    }
+
+    @Test(description = "Запись и чтение через несколько областей отображения, переход к записи по номеру")
+    public void testRoundTrip() throws IOException {
+        for (int boxSize = 2; boxSize <= 5; boxSize++) {
+            final Board board = Board.of(boxSize);
+            final Random random = new Random(boxSize);
+            final int[][] examples = new int[100][board.cells()];
+            try (PackedFormat.Writer writer = new PackedFormat.Writer(packed, board, false)) {
+                for (int[] example : examples) {
+                    for (int i = 0; i < example.length; i++) {
+                        example[i] = random.nextInt(board.size() + 1);
+                    }
+                    writer.write(example);
+                }
+            }
+            assertTrue(PackedFormat.isPacked(packed));
+            assertEquals(Files.size(packed), PackedFormat.HEADER_SIZE + 100L * PackedFormat.blockSize(board));
+
+            try (PackedFormat.Reader reader = new PackedFormat.Reader(packed, 7 * PackedFormat.blockSize(board))) {
+                assertEquals(reader.board(), board);
+                assertEquals(reader.count(), 100);
+                assertFalse(reader.hasSolutions());
+                final int[] nodes = new int[board.cells()];
+                for (int[] example : examples) {
+                    assertTrue(reader.next(nodes));
+                    assertEquals(nodes, example);
+                }
+                assertFalse(reader.next(nodes));
+
+                reader.seek(42);
+                assertTrue(reader.next(nodes));
+                assertEquals(nodes, examples[42]);
+            }
+        }
+    }
+
+    @Test
+    public void testStandardBoardUsesHalfByte() {
+        assertEquals(PackedFormat.blockSize(Board.standard()), 41);
+        assertEquals(PackedFormat.blockSize(Board.of(4)), 160);
+        assertEquals(PackedFormat.blockSize(Board.of(5)), 391);
+    }
+
+    @Test(description = "Текст с решениями упаковывается и печатается обратно")
+    public void testPackAndUnpack() throws IOException {
+        Files.write(text, Arrays.asList(EASY + "," + EASY_SOLUTION, "", HARD), StandardCharsets.US_ASCII);
+        assertEquals(PackedFormat.pack(text, packed, Board.standard(), true), 2);
+
+        try (PackedFormat.Reader reader = new PackedFormat.Reader(packed)) {
+            assertTrue(reader.hasSolutions());
+            final int[] nodes = new int[SudokuSolver.NUM_OF_NODES];
+            final int[] solution = new int[SudokuSolver.NUM_OF_NODES];
+            assertTrue(reader.next(nodes, solution));
+            assertEquals(nodes, SudokuSolver.prepare(EASY));
+            assertEquals(solution, SudokuSolver.prepare(EASY_SOLUTION));
+            assertTrue(reader.next(nodes, solution));
+            assertEquals(nodes, SudokuSolver.prepare(HARD));
+            assertEquals(solution, new int[SudokuSolver.NUM_OF_NODES]);
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PackedFormat.unpack(packed, new PrintStream(out, true));
+        assertEquals(Arrays.asList(out.toString().split("\\R")), Arrays.asList(EASY + " " + EASY_SOLUTION, HARD));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testPackInvalidLine() throws IOException {
+        Files.write(text, Arrays.asList(EASY, "12345"), StandardCharsets.US_ASCII);
+        PackedFormat.pack(text, packed, Board.standard(), false);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testNotPacked() throws IOException {
+        Files.write(text, Arrays.asList(EASY), StandardCharsets.US_ASCII);
+        assertFalse(PackedFormat.isPacked(text));
+        new PackedFormat.Reader(text).close();
+    }
+
+    @Test(description = "Пакетное решение архива, поврежденная запись не прерывает решение")
+    public void testBatchFromPackedFile() throws IOException {
+        Files.write(text, Arrays.asList(HARD, EASY, EASY), StandardCharsets.US_ASCII);
+        PackedFormat.pack(text, packed, Board.standard(), false);
+        try (RandomAccessFile file = new RandomAccessFile(packed.toFile(), "rw")) {
+            // Цвет 15 во второй записи
+            file.seek(PackedFormat.HEADER_SIZE + PackedFormat.blockSize(Board.standard()));
+            file.write(0xF0);
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BatchSolver(2, true).solve(packed, new PrintStream(out, true));
+        final List<String> lines = Arrays.asList(out.toString().split("\\R"));
+        assertEquals(lines, Arrays.asList(SudokuSolver.solve(HARD), BatchSolver.INVALID, EASY_SOLUTION));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWriteColorOutOfRange() throws IOException {
+        try (PackedFormat.Writer writer = new PackedFormat.Writer(packed, Board.standard(), false)) {
+            final int[] nodes = new int[SudokuSolver.NUM_OF_NODES];
+            nodes[3] = 10;
+            writer.write(nodes);
+        }
+    }
+}
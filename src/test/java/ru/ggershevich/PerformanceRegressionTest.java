@@ -0,0 +1,165 @@
+package ru.ggershevich;
+
+import org.testng.Reporter;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Защита от регрессий производительности: на каждом примере corpus9, corpus16 и corpus25 измеряется количество
+ * комбинаций и откатов перебора и количество байт, выделенных за одно решение
+ * ({@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}), и сравнивается с базовыми значениями
+ * из performance-baseline.txt.
+ * <p>
+ * Комбинации и откаты не зависят от машины и JIT, поэтому допуск небольшой. Выделение памяти - наименьшее
+ * из нескольких решений после прогрева, допуск больше. Время решения зависит от машины и только печатается.
+ * После намеренного изменения перебора базовые значения обновляются:
+ * {@code mvn test -Dtest=PerformanceRegressionTest -Dperformance.baseline.update=true}.
+ */
+public class PerformanceRegressionTest {
+    private static final String BASELINE = "performance-baseline.txt";
+    private static final String BASELINE_SOURCE = "src/test/resources/ru/ggershevich/" + BASELINE;
+    private static final String UPDATE_PROPERTY = "performance.baseline.update";
+
+    /**
+     * Допустимый рост комбинаций и откатов
+     */
+    private static final double SEARCH_TOLERANCE = 0.10;
+    /**
+     * Допустимый рост выделения памяти: доля и байты сверх нее (шум TLAB и ленивой инициализации JDK)
+     */
+    private static final double ALLOCATION_TOLERANCE = 0.25;
+    private static final long ALLOCATION_SLACK = 256;
+
+    private static final int WARMUP = 5;
+    private static final int RUNS = 5;
+
+    private final Map<String, long[]> baseline = new TreeMap<>();
+    private final Map<String, long[]> measured = new TreeMap<>();
+    private com.sun.management.ThreadMXBean threads;
+
+    @BeforeClass
+    public void loadBaseline() throws IOException {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+            threads.setThreadAllocatedMemoryEnabled(true);
+        }
+        try (InputStream in = getClass().getResourceAsStream(BASELINE)) {
+            assertNotNull(in, BASELINE);
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    final String[] fields = line.trim().split("\\s+");
+                    baseline.put(fields[0], new long[]{
+                            Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3])});
+                }
+            }
+        }
+    }
+
+    @AfterClass
+    public void updateBaseline() throws IOException {
+        if (!Boolean.getBoolean(UPDATE_PROPERTY)) {
+            return;
+        }
+        final List<String> lines = new ArrayList<>();
+        lines.add("# Базовые значения PerformanceRegressionTest: алгоритм:пример, комбинации, откаты, байт на решение");
+        lines.add("# Обновление: mvn test -Dtest=PerformanceRegressionTest -D" + UPDATE_PROPERTY + "=true");
+        for (Map.Entry<String, long[]> entry : measured.entrySet()) {
+            final long[] values = entry.getValue();
+            lines.add(entry.getKey() + " " + values[0] + " " + values[1] + " " + values[2]);
+        }
+        Files.write(Paths.get(BASELINE_SOURCE), lines, StandardCharsets.UTF_8);
+    }
+
+    @DataProvider
+    public Object[][] corpus() throws IOException {
+        final List<Object[]> examples = new ArrayList<>();
+        for (int boxSize = 3; boxSize <= 5; boxSize++) {
+            final String name = "corpus" + boxSize * boxSize;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    getClass().getResourceAsStream(name + ".txt"), StandardCharsets.US_ASCII))) {
+                String line;
+                int number = 0;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        number++;
+                        examples.add(new Object[]{"coloring:" + name + "." + number, boxSize, line});
+                        if (boxSize == 3) {
+                            examples.add(new Object[]{"dlx:" + name + "." + number, boxSize, line});
+                        }
+                    }
+                }
+            }
+        }
+        return examples.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "corpus")
+    public void testNoRegression(String key, int boxSize, String example) {
+        final Board board = Board.of(boxSize);
+        final Solver solver = key.startsWith("dlx:") ? new DlxSolver()
+                : new ColoringSolver(SolverConfig.defaults().withBoard(board));
+        final int[] nodes = board.parse(example);
+
+        SolveResult result = null;
+        for (int i = 0; i < WARMUP; i++) {
+            result = solver.solve(nodes, SolveLimits.none());
+        }
+        assertTrue(board.isSolution(result.solution()), key);
+
+        long bytes = Long.MAX_VALUE;
+        long nanos = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            final long allocatedBefore = allocatedBytes();
+            final long start = System.nanoTime();
+            solver.solve(nodes, SolveLimits.none());
+            nanos = Math.min(nanos, System.nanoTime() - start);
+            bytes = Math.min(bytes, allocatedBytes() - allocatedBefore);
+        }
+        final SolveStats stats = result.stats();
+        measured.put(key, new long[]{stats.combinations(), stats.backtracks(), Math.max(bytes, 0)});
+        // В отчет TestNG, а не в консоль сборки
+        Reporter.log(String.format("%s: %d combinations, %d backtracks, %d bytes, %.3f ms",
+                key, stats.combinations(), stats.backtracks(), bytes, nanos / 1e6));
+
+        if (Boolean.getBoolean(UPDATE_PROPERTY)) {
+            return;
+        }
+        final long[] expected = baseline.get(key);
+        assertNotNull(expected, "No baseline for " + key + ", see " + BASELINE);
+        check(key, "combinations", stats.combinations(), expected[0] * (1 + SEARCH_TOLERANCE));
+        check(key, "backtracks", stats.backtracks(), expected[1] * (1 + SEARCH_TOLERANCE));
+        if (threads != null) {
+            check(key, "allocated bytes", bytes, expected[2] * (1 + ALLOCATION_TOLERANCE) + ALLOCATION_SLACK);
+        }
+    }
+
+    private static void check(String key, String figure, long actual, double limit) {
+        assertTrue(actual <= limit, key + ": " + figure + " " + actual + " exceeds " + (long) limit);
+    }
+
+    private long allocatedBytes() {
+        return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+}
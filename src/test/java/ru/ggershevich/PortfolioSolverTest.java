@@ -0,0 +1,187 @@
+package ru.ggershevich;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static ru.ggershevich.SudokuSolver.prepare;
+
+public class PortfolioSolverTest {
+    private static final String HARD = "100000089000009002000000450007600000030040000900002005004070000500008010060300000";
+    private static final String NO_SOLUTION = "113800405024605000087000930490306000001000500000701093069000740000207680102008350";
+
+    /**
+     * Перебирает, пока не установлен флаг прерывания
+     */
+    private static final class Endless implements Solver {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+
+        @Override
+        public int[] solve(int[] nodes) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SolveResult solve(int[] nodes, SolveLimits limits) {
+            started.countDown();
+            while (!limits.isCancelled()) {
+                Thread.yield();
+            }
+            stopped.countDown();
+            return new SolveResult(SolveResult.Status.CANCELLED, null, new SolveStats(0, 0, 0, 0, 0));
+        }
+    }
+
+    private static final class Failing implements Solver {
+        @Override
+        public int[] solve(int[] nodes) {
+            throw new IllegalStateException("Engine failed");
+        }
+
+        @Override
+        public SolveResult solve(int[] nodes, SolveLimits limits) {
+            return new SolveResult(SolveResult.Status.SOLVED, solve(nodes), new SolveStats(0, 0, 0, 0, 0));
+        }
+    }
+
+    @Test
+    public void testSolve() {
+        final PortfolioSolver solver = new PortfolioSolver();
+        assertEquals(solver.engines().size(), 4);
+        final int[] expected = new DlxSolver().solve(prepare(HARD));
+        assertEquals(solver.solve(prepare(HARD)), expected);
+        assertEquals(solver.solve(HARD), SudokuSolver.toString(expected));
+
+        final SolveResult result = solver.solve(prepare(NO_SOLUTION), SolveLimits.none());
+        assertEquals(result.status(), SolveResult.Status.NO_SOLUTION);
+        long wins = 0;
+        for (int i = 0; i < solver.engines().size(); i++) {
+            wins += solver.wins(i);
+        }
+        assertEquals(wins, 3);
+    }
+
+    @Test(description = "Ответ первого алгоритма прерывает остальные")
+    public void testLosersCancelled() throws Exception {
+        final Endless endless = new Endless();
+        final PortfolioSolver solver = new PortfolioSolver(Board.standard(),
+                Arrays.asList(endless, new ColoringSolver()));
+        final SolveResult result = solver.solve(prepare(HARD), SolveLimits.none());
+        assertEquals(result.status(), SolveResult.Status.SOLVED);
+        assertTrue(endless.stopped.await(10, TimeUnit.SECONDS));
+        assertEquals(solver.wins(0), 0);
+        assertEquals(solver.wins(1), 1);
+    }
+
+    @Test(description = "Флаг прерывания вызывающего передается всем алгоритмам")
+    public void testCallerCancellation() throws Exception {
+        final Endless endless = new Endless();
+        final PortfolioSolver solver = new PortfolioSolver(Board.standard(), Collections.singletonList(endless));
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final Thread canceller = new Thread(() -> {
+            try {
+                endless.started.await();
+                cancelled.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        canceller.start();
+        final SolveResult result = solver.solve(prepare(HARD), SolveLimits.none().withCancellation(cancelled));
+        assertEquals(result.status(), SolveResult.Status.CANCELLED);
+        assertNull(result.solution());
+        canceller.join();
+    }
+
+    @Test(description = "Исключение одного алгоритма не прерывает остальные")
+    public void testEngineFailure() {
+        final PortfolioSolver solver = new PortfolioSolver(Board.standard(),
+                Arrays.asList(new Failing(), new ColoringSolver()));
+        final SolveResult result = solver.solve(prepare(HARD), SolveLimits.none());
+        assertEquals(result.status(), SolveResult.Status.SOLVED);
+        assertEquals(solver.failures(), 1);
+        assertEquals(solver.wins(1), 1);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class, description = "Ответа нет ни от одного алгоритма")
+    public void testAllEnginesFailed() {
+        new PortfolioSolver(Board.standard(), Arrays.asList(new Failing(), new Failing())).solve(prepare(HARD));
+    }
+
+    @Test(description = "Алгоритм, которому не хватило потока, решает в вызывающем потоке")
+    public void testSaturated() throws Exception {
+        final Endless pooled = new Endless();
+        final PortfolioSolver solver = new PortfolioSolver(Board.standard(),
+                Arrays.asList(pooled, new ColoringSolver()), 1);
+        assertEquals(solver.solve(prepare(HARD), SolveLimits.none()).status(), SolveResult.Status.SOLVED);
+        assertTrue(pooled.stopped.await(10, TimeUnit.SECONDS));
+
+        // Ответ алгоритма из пула прерывает алгоритм в вызывающем потоке
+        final Endless inline = new Endless();
+        final PortfolioSolver reversed = new PortfolioSolver(Board.standard(),
+                Arrays.asList(new ColoringSolver(), inline), 1);
+        assertEquals(reversed.solve(prepare(HARD), SolveLimits.none()).status(), SolveResult.Status.SOLVED);
+        assertEquals(inline.stopped.getCount(), 0);
+    }
+
+    @Test(description = "Алгоритм в вызывающем потоке видит флаг прерывания вызывающего")
+    public void testSaturatedCallerCancellation() throws Exception {
+        final Endless pooled = new Endless();
+        final Endless inline = new Endless();
+        final PortfolioSolver solver = new PortfolioSolver(Board.standard(), Arrays.asList(pooled, inline), 1);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final Thread canceller = new Thread(() -> {
+            try {
+                inline.started.await();
+                cancelled.set(true);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        canceller.start();
+        final SolveResult result = solver.solve(prepare(HARD), SolveLimits.none().withCancellation(cancelled));
+        assertEquals(result.status(), SolveResult.Status.CANCELLED);
+        assertTrue(pooled.stopped.await(10, TimeUnit.SECONDS));
+        canceller.join();
+    }
+
+    @Test(description = "Если все алгоритмы прерваны ограничением, возвращается прерванный результат")
+    public void testBudgetExceeded() {
+        final SolveResult result = new PortfolioSolver().solve(prepare(HARD),
+                SolveLimits.none().withCombinationBudget(1));
+        assertEquals(result.status(), SolveResult.Status.BUDGET_EXCEEDED);
+    }
+
+    @Test(description = "Обратная нумерация цветов дает то же решение")
+    public void testRelabeled() {
+        final Solver relabeled = new PortfolioSolver.Relabeled(new ColoringSolver(), 9);
+        assertEquals(relabeled.solve(prepare(HARD)), new ColoringSolver().solve(prepare(HARD)));
+        assertNull(relabeled.solve(prepare(NO_SOLUTION)));
+    }
+
+    @Test
+    public void testLargeBoard() {
+        final Board board = Board.of(4);
+        final PortfolioSolver solver = new PortfolioSolver(board);
+        assertEquals(solver.engines().size(), 3);
+        assertTrue(board.isSolution(solver.solve(new int[board.cells()])));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testEmptyPortfolio() {
+        new PortfolioSolver(Board.standard(), Collections.<Solver>emptyList());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongSize() {
+        new PortfolioSolver().solve(new int[10]);
+    }
+}
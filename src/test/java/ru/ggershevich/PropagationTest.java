@@ -0,0 +1,76 @@
+package ru.ggershevich;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static ru.ggershevich.Propagation.Technique.HIDDEN_PAIRS;
+import static ru.ggershevich.Propagation.Technique.HIDDEN_SINGLES;
+import static ru.ggershevich.Propagation.Technique.LOCKED_CANDIDATES;
+import static ru.ggershevich.Propagation.Technique.NAKED_PAIRS;
+import static ru.ggershevich.Propagation.Technique.NAKED_SINGLES;
+
+public class PropagationTest {
+    private static final String HARD = "002000041000082070000040009200079300010000080006810004100090000060430000850000400";
+    private static final String VERY_HARD = "100000089000009002000000450007600000030040000900002005004070000500008010060300000";
+
+    @DataProvider
+    public Object[][] propagations() {
+        return new Object[][]{
+                {Propagation.none()},
+                {Propagation.of(NAKED_SINGLES)},
+                {Propagation.of(HIDDEN_SINGLES)},
+                {Propagation.of(NAKED_SINGLES, LOCKED_CANDIDATES)},
+                {Propagation.of(NAKED_SINGLES, NAKED_PAIRS)},
+                {Propagation.of(NAKED_SINGLES, HIDDEN_PAIRS)},
+                {Propagation.all()},
+        };
+    }
+
+    @Test(dataProvider = "propagations", description = "Техники не меняют решение, только сокращают перебор")
+    public void testSameSolution(Propagation propagation) {
+        final int[] expected = SudokuSolver.solve(SudokuSolver.prepare(VERY_HARD), Propagation.of(NAKED_SINGLES));
+        assertEquals(SudokuSolver.solve(SudokuSolver.prepare(VERY_HARD), propagation), expected);
+    }
+
+    @Test
+    public void testEliminationsCounted() {
+        final ColoringSolver solver = new ColoringSolver(Propagation.all());
+        final SolveStats stats = solver.solveWithStats(SudokuSolver.prepare(HARD)).stats();
+        assertTrue(stats.eliminations(NAKED_SINGLES) > 0);
+        assertTrue(stats.eliminations(HIDDEN_SINGLES) > 0);
+        assertTrue(stats.eliminations(LOCKED_CANDIDATES) > 0);
+        assertEquals(solver.eliminations(HIDDEN_SINGLES), stats.eliminations(HIDDEN_SINGLES));
+
+        // Счетчики одного решения не накапливаются, счетчики решателя - накапливаются
+        assertEquals(solver.solveWithStats(SudokuSolver.prepare(HARD)).stats().eliminations(HIDDEN_SINGLES),
+                stats.eliminations(HIDDEN_SINGLES));
+        assertEquals(solver.eliminations(HIDDEN_SINGLES), 2 * stats.eliminations(HIDDEN_SINGLES));
+    }
+
+    @Test
+    public void testDisabledTechniqueNotCounted() {
+        final Propagation propagation = Propagation.of(NAKED_SINGLES);
+        final ColoringSolver solver = new ColoringSolver(propagation);
+        solver.solve(SudokuSolver.prepare(HARD));
+        assertFalse(propagation.isEnabled(HIDDEN_SINGLES));
+        assertEquals(solver.eliminations(HIDDEN_SINGLES), 0);
+        assertTrue(solver.eliminations(NAKED_SINGLES) > 0);
+    }
+
+    @Test
+    public void testEquality() {
+        assertEquals(Propagation.of(NAKED_SINGLES, HIDDEN_PAIRS), Propagation.of(HIDDEN_PAIRS, NAKED_SINGLES));
+        assertEquals(Propagation.of(NAKED_SINGLES).hashCode(), Propagation.of(NAKED_SINGLES).hashCode());
+        assertFalse(Propagation.all().equals(Propagation.none()));
+    }
+
+    @Test(description = "Цифра 1 не может стоять ни в одной клетке первой строки")
+    public void testHiddenSinglesContradiction() {
+        final String example = "023456780000000000000000000000000000100000000000000001000000000000000000000000000";
+        assertNull(SudokuSolver.solve(SudokuSolver.prepare(example), Propagation.of(HIDDEN_SINGLES)));
+    }
+}
@@ -0,0 +1,83 @@
+package ru.ggershevich;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static ru.ggershevich.SudokuSolver.prepare;
+
+public class SolveEventTest {
+    private static final String HARD = "100000089000009002000000450007600000030040000900002005004070000500008010060300000";
+
+    @Test
+    public void testStats() {
+        final SolveResult result = SudokuSolver.solveWithStats(prepare(HARD));
+        assertTrue(result.isSolved());
+        assertTrue(SudokuSolver.checkNodes(result.solution()));
+
+        final SolveStats stats = result.stats();
+        assertTrue(stats.combinations() > 0);
+        assertTrue(stats.backtracks() < stats.combinations());
+        assertTrue(stats.maxDepth() > 0 && stats.maxDepth() < 9);
+        assertTrue(stats.nakedSingles() > 0);
+        assertTrue(stats.elapsedNanos() > 0);
+    }
+
+    @Test(description = "Простой пример решается одними техниками исключения, без перебора")
+    public void testStatsWithoutSearch() {
+        final SolveStats stats = SudokuSolver.solveWithStats(
+                prepare("013800405024605000087000930490306000001000500000701093069000740000207680102008350")).stats();
+        assertEquals(stats.combinations(), 0);
+        assertEquals(stats.backtracks(), 0);
+        assertEquals(stats.maxDepth(), 0);
+    }
+
+    @Test
+    public void testEventOverThreshold() throws IOException {
+        final Path file = Files.createTempFile("solve", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(SolveEvent.NAME).withThreshold(Duration.ZERO);
+            recording.start();
+            SudokuSolver.solveWithStats(prepare(HARD));
+            recording.stop();
+            recording.dump(file);
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals(SolveEvent.NAME))
+                    .collect(Collectors.toList());
+            assertEquals(events.size(), 1);
+            assertEquals(events.get(0).getString("puzzle"), HARD);
+            assertTrue(events.get(0).getBoolean("solved"));
+            assertTrue(events.get(0).getLong("combinations") > 0);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testNoEventUnderThreshold() throws IOException {
+        final Path file = Files.createTempFile("solve", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(SolveEvent.NAME).withThreshold(Duration.ofHours(1));
+            recording.start();
+            SudokuSolver.solveWithStats(prepare(HARD));
+            recording.stop();
+            recording.dump(file);
+
+            assertTrue(RecordingFile.readAllEvents(file).stream()
+                    .noneMatch(e -> e.getEventType().getName().equals(SolveEvent.NAME)));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
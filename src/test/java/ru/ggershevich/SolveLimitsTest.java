@@ -0,0 +1,77 @@
+package ru.ggershevich;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static ru.ggershevich.SudokuSolver.prepare;
+
+public class SolveLimitsTest {
+    private static final String HARD_EXAMPLE = "100000089000009002000000450007600000030040000900002005004070000500008010060300000";
+    private static final String NO_SOLUTION = "113800405024605000087000930490306000001000500000701093069000740000207680102008350";
+
+    @DataProvider
+    public Object[][] solvers() {
+        return new Object[][]{{new ColoringSolver()}, {new DlxSolver()}, {new TemplateSolver()}};
+    }
+
+    @Test(dataProvider = "solvers")
+    public void testNoLimits(Solver solver) {
+        final SolveResult result = solver.solve(prepare(HARD_EXAMPLE), SolveLimits.none());
+        assertEquals(result.status(), SolveResult.Status.SOLVED);
+        assertNotNull(result.solution());
+
+        assertEquals(solver.solve(prepare(NO_SOLUTION), SolveLimits.none()).status(), SolveResult.Status.NO_SOLUTION);
+    }
+
+    @Test(dataProvider = "solvers")
+    public void testBudgetExceeded(Solver solver) {
+        final SolveResult result = solver.solve(prepare(HARD_EXAMPLE), SolveLimits.none().withCombinationBudget(10));
+        assertEquals(result.status(), SolveResult.Status.BUDGET_EXCEEDED);
+        assertTrue(result.status().isInterrupted());
+        assertNull(result.solution());
+        assertEquals(result.stats().combinations(), 10);
+    }
+
+    @Test(dataProvider = "solvers")
+    public void testDeadlinePassed(Solver solver) {
+        final SolveResult result = solver.solve(prepare(HARD_EXAMPLE), SolveLimits.none().withDeadline(System.nanoTime() - 1));
+        assertEquals(result.status(), SolveResult.Status.TIMED_OUT);
+        assertNull(result.solution());
+    }
+
+    @Test(dataProvider = "solvers")
+    public void testCancelled(Solver solver) {
+        final SolveLimits limits = SolveLimits.none().withCancellation(new AtomicBoolean(true));
+        assertEquals(solver.solve(prepare(HARD_EXAMPLE), limits).status(), SolveResult.Status.CANCELLED);
+    }
+
+    @Test(description = "Ограничения, которые не сработали, не меняют результат")
+    public void testGenerousLimits() {
+        final SolveLimits limits = SolveLimits.none()
+                .withTimeout(1, TimeUnit.MINUTES)
+                .withCombinationBudget(Long.MAX_VALUE)
+                .withCancellation(new AtomicBoolean());
+        final SolveResult result = new ColoringSolver().solve(prepare(HARD_EXAMPLE), limits);
+        assertEquals(result.solution(), SudokuSolver.solve(prepare(HARD_EXAMPLE)));
+    }
+
+    @Test(description = "Алгоритм без собственной проверки ограничений проверяет их до решения")
+    public void testDefaultImplementation() {
+        final Solver solver = SudokuSolver::solve;
+        assertEquals(solver.solve(prepare(HARD_EXAMPLE), SolveLimits.none()).status(), SolveResult.Status.SOLVED);
+        assertEquals(solver.solve(prepare(HARD_EXAMPLE), SolveLimits.none().withDeadline(System.nanoTime() - 1)).status(),
+                SolveResult.Status.TIMED_OUT);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidBudget() {
+        SolveLimits.none().withCombinationBudget(0);
+    }
+}
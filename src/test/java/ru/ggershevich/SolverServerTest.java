@@ -0,0 +1,272 @@
+package ru.ggershevich;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class SolverServerTest {
+    private static final String EASY = "013800405024605000087000930490306000001000500000701093069000740000207680102008350";
+    private static final String EASY_SOLUTION = "613879425924635178587124936498356217731982564256741893869513742345297681172468359";
+    private static final String UNSOLVABLE = "113800405024605000087000930490306000001000500000701093069000740000207680102008350";
+
+    private SolverServer server;
+
+    @AfterMethod
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testSolve() throws IOException {
+        start(2, 16, 5000, new ColoringSolver());
+        assertEquals(post("/solve", EASY).body.replaceAll(",\"micros\":\\d+", ""),
+                "{\"status\":\"solved\",\"solution\":\"" + EASY_SOLUTION + "\"}");
+        assertEquals(get("/solve?puzzle=" + UNSOLVABLE).body.replaceAll(",\"micros\":\\d+", ""),
+                "{\"status\":\"not_found\"}");
+
+        final Response invalid = post("/solve", "12345");
+        assertEquals(invalid.code, 400);
+        assertEquals(invalid.body, "{\"status\":\"invalid\"}");
+    }
+
+    @Test
+    public void testBatch() throws IOException {
+        start(2, 16, 5000, new ColoringSolver());
+        final Response response = post("/batch", EASY + "\r\n\n12345\n" + UNSOLVABLE + "\n" + EASY);
+        assertEquals(response.code, 200);
+        final String[] lines = response.body.replaceAll(",\"micros\":\\d+", "").split("\n");
+        assertEquals(lines.length, 4);
+        assertEquals(lines[0], "{\"line\":1,\"status\":\"solved\",\"solution\":\"" + EASY_SOLUTION + "\"}");
+        assertEquals(lines[1], "{\"line\":2,\"status\":\"invalid\"}");
+        assertEquals(lines[2], "{\"line\":3,\"status\":\"not_found\"}");
+        assertEquals(lines[3], "{\"line\":4,\"status\":\"solved\",\"solution\":\"" + EASY_SOLUTION + "\"}");
+    }
+
+    @Test(description = "Пока единственный поток занят, а очередь заполнена, новые запросы получают 503")
+    public void testRejectWhenQueueIsFull() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        start(1, 1, 10_000, nodes -> {
+            started.countDown();
+            await(release);
+            return null;
+        });
+        final Thread first = new Thread(() -> post("/solve", EASY));
+        final Thread second = new Thread(() -> post("/solve", EASY));
+        try {
+            first.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            second.start();
+            // Второй запрос ждет в очереди
+            for (int i = 0; i < 500 && !get("/metrics").body.contains("sudoku_queue_size 1"); i++) {
+                Thread.sleep(10);
+            }
+
+            final Response rejected = post("/solve", EASY);
+            assertEquals(rejected.code, 503);
+            assertEquals(rejected.body, "{\"status\":\"rejected\"}");
+            assertTrue(get("/metrics").body.contains("sudoku_puzzles_total{status=\"rejected\"} 1"));
+        } finally {
+            release.countDown();
+            first.join();
+            second.join();
+        }
+    }
+
+    @Test(description = "Клиенты, не дописавшие тело, заняли все обработчики: новые примеры получают 503, /metrics отвечает")
+    public void testRejectWhenHandlersAreBusy() throws Exception {
+        start(1, 1, 10_000, new ColoringSolver());
+        final Socket[] stalled = new Socket[1 + 1 + SolverServer.SPARE_HANDLERS];
+        try {
+            for (int i = 0; i < stalled.length; i++) {
+                stalled[i] = new Socket("127.0.0.1", server.port());
+                final OutputStream out = stalled[i].getOutputStream();
+                out.write(("POST /solve HTTP/1.1\r\nHost: 127.0.0.1\r\nContent-Length: 81\r\n\r\n"
+                        + EASY.substring(0, 10)).getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            }
+            Response response = post("/solve", EASY);
+            for (int i = 0; i < 500 && response.code != 503; i++) {
+                sleep();
+                response = post("/solve", EASY);
+            }
+            assertEquals(response.code, 503);
+            assertEquals(response.body, "{\"status\":\"rejected\"}");
+            assertEquals(get("/metrics").code, 200);
+        } finally {
+            for (Socket socket : stalled) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+        Response response = post("/solve", EASY);
+        for (int i = 0; i < 500 && response.code != 200; i++) {
+            sleep();
+            response = post("/solve", EASY);
+        }
+        assertEquals(response.code, 200);
+    }
+
+    @Test(description = "По истечении срока перебор прерывается, ответ - 504")
+    public void testDeadline() throws IOException {
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        start(1, 4, 10_000, new Solver() {
+            @Override
+            public int[] solve(int[] nodes) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public int[] solve(int[] nodes, AtomicBoolean cancelled) {
+                while (!cancelled.get()) {
+                    Thread.yield();
+                }
+                interrupted.set(true);
+                return null;
+            }
+        });
+        final Response response = post("/solve", EASY, 50);
+        assertEquals(response.code, 504);
+        assertEquals(response.body, "{\"status\":\"timeout\"}");
+        for (int i = 0; i < 500 && !interrupted.get(); i++) {
+            sleep();
+        }
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    public void testMetrics() throws IOException {
+        start(2, 16, 5000, new ColoringSolver());
+        post("/solve", EASY);
+        post("/batch", EASY + "\n" + UNSOLVABLE);
+        final String metrics = get("/metrics").body;
+        assertTrue(metrics.contains("sudoku_requests_total{endpoint=\"solve\"} 1"));
+        assertTrue(metrics.contains("sudoku_requests_total{endpoint=\"batch\"} 1"));
+        assertTrue(metrics.contains("sudoku_puzzles_total{status=\"solved\"} 2"));
+        assertTrue(metrics.contains("sudoku_puzzles_total{status=\"not_found\"} 1"));
+        assertTrue(metrics.contains("sudoku_solve_latency_micros_bucket{le=\"+Inf\"} 3"));
+        assertTrue(metrics.contains("sudoku_throughput_puzzles_per_second "));
+    }
+
+    @Test(description = "Исключение решателя - ответ 500 с JSON, а не оборванное соединение")
+    public void testSolverFailure() throws IOException {
+        start(1, 4, 5000, nodes -> {
+            throw new IllegalStateException("broken");
+        });
+        final Response solve = post("/solve", EASY);
+        assertEquals(solve.code, 500);
+        assertEquals(solve.body, "{\"status\":\"error\",\"error\":\"Solver failed\"}");
+
+        final Response batch = post("/batch", EASY + "\n12345");
+        assertEquals(batch.code, 200);
+        assertEquals(batch.body, "{\"line\":1,\"status\":\"error\",\"error\":\"Solver failed\"}\n"
+                + "{\"line\":2,\"status\":\"invalid\"}");
+    }
+
+    @Test
+    public void testBodyTooLarge() throws IOException {
+        start(1, 4, 5000, new ColoringSolver());
+        final StringBuilder large = new StringBuilder();
+        while (large.length() <= SolverServer.MAX_LINE_LENGTH) {
+            large.append(EASY);
+        }
+        assertEquals(post("/solve", large.toString()).code, 413);
+        final Response batch = post("/batch", EASY + "\n" + large);
+        assertEquals(batch.code, 413);
+        assertEquals(batch.body, "{\"status\":\"too_large\"}");
+        assertEquals(post("/solve", EASY).code, 200);
+    }
+
+    private void start(int threads, int queue, long deadlineMillis, Solver solver) throws IOException {
+        server = new SolverServer(new InetSocketAddress("127.0.0.1", 0), threads, queue, deadlineMillis, solver);
+        server.start();
+    }
+
+    private Response get(String path) {
+        return request("GET", path, null, 0);
+    }
+
+    private Response post(String path, String body) {
+        return request("POST", path, body, 0);
+    }
+
+    private Response post(String path, String body, long deadlineMillis) {
+        return request("POST", path, body, deadlineMillis);
+    }
+
+    private Response request(String method, String path, String body, long deadlineMillis) {
+        try {
+            final HttpURLConnection connection =
+                    (HttpURLConnection) new URL("http://127.0.0.1:" + server.port() + path).openConnection();
+            connection.setRequestMethod(method);
+            if (deadlineMillis > 0) {
+                connection.setRequestProperty(SolverServer.DEADLINE_HEADER, Long.toString(deadlineMillis));
+            }
+            if (body != null) {
+                connection.setDoOutput(true);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.US_ASCII));
+                }
+            }
+            final int code = connection.getResponseCode();
+            final InputStream in = code < 400 ? connection.getInputStream() : connection.getErrorStream();
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            if (in != null) {
+                try (InputStream stream = in) {
+                    final byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = stream.read(buffer)) > 0) {
+                        bytes.write(buffer, 0, read);
+                    }
+                }
+            }
+            return new Response(code, new String(bytes.toByteArray(), StandardCharsets.UTF_8).trim());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Response {
+        final int code;
+        final String body;
+
+        Response(int code, String body) {
+            this.code = code;
+            this.body = body;
+        }
+    }
+}
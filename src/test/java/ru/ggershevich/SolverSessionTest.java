@@ -0,0 +1,102 @@
+package ru.ggershevich;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class SolverSessionTest {
+    private static final String EASY = "013800405024605000087000930490306000001000500000701093069000740000207680102008350";
+    private static final String EASY_SOLUTION = "613879425924635178587124936498356217731982564256741893869513742345297681172468359";
+
+    @Test(description = "Верные цифры и стирание не требуют нового перебора")
+    public void testReusesSolution() {
+        final SolverSession session = new SolverSession(EASY);
+        assertTrue(session.isSolvable());
+        assertEquals(session.searches(), 1);
+        assertEquals(SudokuSolver.toString(session.solution()), EASY_SOLUTION);
+
+        session.set(0, 6);
+        session.set(4, 7);
+        session.clear(1);
+        assertTrue(session.isSolvable());
+        assertEquals(session.toString().substring(0, 9), "603870405");
+        assertEquals(session.searches(), 1);
+    }
+
+    @Test(description = "Доказанное отсутствие решения остается в силе при добавлении цифр")
+    public void testReusesUnsolvable() {
+        final SolverSession session = new SolverSession(EASY);
+        // Вершина 0 по решению 6, цифра 9 конфликтов не дает, но решение исключает
+        session.set(0, 9);
+        assertFalse(session.hasConflicts());
+        assertFalse(session.isSolvable());
+        assertEquals(session.searches(), 1);
+        assertEquals(session.hint(), -1);
+
+        session.set(4, 7);
+        assertFalse(session.isSolvable());
+        assertEquals(session.searches(), 1);
+
+        session.clear(0);
+        assertTrue(session.isSolvable());
+        assertEquals(session.searches(), 2);
+    }
+
+    @Test
+    public void testConflicts() {
+        final SolverSession session = new SolverSession(EASY);
+        assertFalse(session.isConflict(1));
+        session.set(0, 1);
+        assertTrue(session.hasConflicts());
+        assertTrue(session.isConflict(0));
+        assertTrue(session.isConflict(1));
+        assertFalse(session.isSolvable());
+        assertNull(session.solution());
+        // Конфликт определяется без перебора
+        assertEquals(session.searches(), 0);
+
+        session.set(0, 6);
+        assertFalse(session.hasConflicts());
+        assertTrue(session.isSolvable());
+    }
+
+    @Test
+    public void testCandidatesAndHint() {
+        final SolverSession session = new SolverSession(EASY);
+        // Строка 0: 1 3 8 4 5, колонка 0: 4 1, квадрат 0: 1 3 2 4 8 7
+        assertEquals(session.candidates(0), Board.colorBit(6) | Board.colorBit(9));
+        // Собственный цвет вершины не исключается
+        assertEquals(session.candidates(1), Board.colorBit(1));
+
+        final int hint = session.hint();
+        assertEquals(session.get(hint), 0);
+        assertEquals(Integer.bitCount(session.candidates(hint)), 1);
+        session.set(hint, session.solution()[hint]);
+        assertTrue(session.isSolvable());
+        assertEquals(session.searches(), 1);
+    }
+
+    @Test
+    public void testLargeBoard() {
+        final Board board = Board.of(4);
+        final SolverSession session = new SolverSession(new ColoringSolver(SolverConfig.defaults().withBoard(board)),
+                new int[board.cells()]);
+        session.set(0, 16);
+        assertTrue(session.isSolvable());
+        assertEquals(session.solution()[0], 16);
+        assertTrue(board.isSolution(session.solution()));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidColor() {
+        new SolverSession(EASY).set(0, 10);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidNode() {
+        new SolverSession(EASY).get(81);
+    }
+}
@@ -1,10 +1,12 @@
 package ru.ggershevich;
 
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static ru.ggershevich.SudokuSolver.*;
 import static ru.ggershevich.SudokuSolver.solve;
@@ -28,9 +30,10 @@ public class SudokuSolverTest {
     }
 
 
-    @Test(description = "Очень сложный пример. Отключен, так как требует много времени на выполнение", enabled = false)
+    @Test(description = "Очень сложный пример")
     // Решенеие для данного примера с выключенной оптимизацией nakedSingle вычисляется примерно за 5 минут 30 секунд. Перебирается 98_536_075 комбинаций.
     // С включенной оптимизацией примерно за 3 минуты 40 секунд. Перебирается 4_6623_263 комбинаций
+    // С инкрементальными масками доступных цветов комбинации с конфликтами отсекаются сразу, решение - меньше секунды
     public void testSolve3() {
         checkAnswer(solve(prepare("100000089000009002000000450007600000030040000900002005004070000500008010060300000")));
     }
@@ -46,6 +49,53 @@ public class SudokuSolverTest {
         checkAnswer(solve(prepare("002000041000082070000040009200079300010000080006810004100090000060430000850000400")));
     }
 
+    @Test(description = "Сложный пример из задания, параллельный поиск")
+    public void testSolveParallel() {
+        checkAnswer(solveParallel(prepare("002000041000082070000040009200079300010000080006810004100090000060430000850000400")));
+    }
+
+    @Test
+    public void testSolveParallelString() {
+        assertEquals(solveParallel("013800405024605000087000930490306000001000500000701093069000740000207680102008350"),
+                "613879425924635178587124936498356217731982564256741893869513742345297681172468359");
+    }
+
+    @DataProvider
+    public Object[][] solutionCounts() {
+        return new Object[][]{
+                {"013800405024605000087000930490306000001000500000701093069000740000207680102008350", 1},
+                {"013800405004605000007000030400306000001000500000701090069000740000207080102008350", 13},
+                {"013800405004605000007000030000300000001000500000701090069000740000207080102008350", 250},
+                {"010800405004605000007000030000300000001000500000701000069000700000207080102008350", 4006},
+                {"113800405024605000087000930490306000001000500000701093069000740000207680102008350", 0},
+        };
+    }
+
+    @Test(dataProvider = "solutionCounts")
+    public void testCountSolutions(String example, int expected) {
+        assertEquals(countSolutions(example, Long.MAX_VALUE), expected);
+        assertEquals(countSolutionsParallel(prepare(example), Long.MAX_VALUE), expected);
+    }
+
+    @Test(description = "Перебор прекращается, как только найдено limit решений")
+    public void testCountSolutionsLimit() {
+        assertEquals(countSolutions("013800405004605000007000030000300000001000500000701090069000740000207080102008350", 10), 10);
+        assertEquals(countSolutions(new int[NUM_OF_NODES], 100), 100);
+        assertEquals(countSolutionsParallel(prepare("010800405004605000007000030000300000001000500000701000060000700000207080102008350"), 100), 100);
+    }
+
+    @Test
+    public void testIsUnique() {
+        assertTrue(isUnique("002000041000082070000040009200079300010000080006810004100090000060430000850000400"));
+        assertFalse(isUnique("013800405004605000007000030400306000001000500000701090069000740000207080102008350"));
+        assertFalse(isUnique("113800405024605000087000930490306000001000500000701093069000740000207680102008350"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testCountSolutionsInvalidLimit() {
+        countSolutions(new int[NUM_OF_NODES], 0);
+    }
+
     private void checkAnswer(int[] answer) {
         assertTrue(Arrays.stream(answer).noneMatch(c -> c < 1 || c > 9));
 
@@ -0,0 +1,55 @@
+package ru.ggershevich;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static ru.ggershevich.SudokuSolver.prepare;
+
+public class TemplateSolverTest {
+
+    @DataProvider
+    public Object[][] examples() {
+        return new Object[][]{
+                {"081790304000040016006103050000008640008904100049200000090605200870020000205017490"},
+                {"300000000050703008000028070700000043000000000003904105400300800100040000968000200"},
+                {"100000089000009002000000450007600000030040000900002005004070000500008010060300000"},
+                {"013800405024605000087000930490306000001000500000701093069000740000207680102008350"},
+                {"002000041000082070000040009200079300010000080006810004100090000060430000850000400"},
+        };
+    }
+
+    @Test(dataProvider = "examples")
+    public void testSameSolutionAsColoring(String example) {
+        assertEquals(new TemplateSolver().solve(prepare(example)), SudokuSolver.solve(prepare(example)));
+    }
+
+    @Test(dataProvider = "examples", description = "Без техник исключения - только отбор шаблонов и их перебор")
+    public void testWithoutPropagation(String example) {
+        assertEquals(new TemplateSolver(Propagation.none()).solve(prepare(example)), SudokuSolver.solve(prepare(example)));
+    }
+
+    @Test
+    public void testEmptyBoard() {
+        final int[] solution = new TemplateSolver(Propagation.none()).solve(new int[SudokuSolver.NUM_OF_NODES]);
+        assertEquals(SudokuSolver.checkNodes(solution), true);
+    }
+
+    @Test
+    public void testUnsolvable() {
+        assertNull(new TemplateSolver().solve(prepare("113800405024605000087000930490306000001000500000701093069000740000207680102008350")));
+    }
+
+    @DataProvider
+    public Object[][] invalid() {
+        final int[] outOfRange = prepare("013800405024605000087000930490306000001000500000701093069000740000207680102008350");
+        outOfRange[0] = 10;
+        return new Object[][]{{new int[40]}, {new int[256]}, {outOfRange}};
+    }
+
+    @Test(dataProvider = "invalid", expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidExample(int[] nodes) {
+        new TemplateSolver().solve(nodes);
+    }
+}